@@ -0,0 +1,115 @@
+package com.springbootdemo.customer;
+
+import com.springbootdemo.Main;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+// GET /api/v1/customers with and without Accept-Encoding: gzip, over HTTP/1.1 and h2c,
+// for a page below server.compression.min-response-size and for the whole list. The client
+// inflates what it gets, so both ends pay for the compression. The wireBytes counter is the
+// body bytes on the wire per second, divided by the score it gives the bytes per request.
+// Localhost has no bandwidth limit, so the score here is the CPU side; the bytes are what a
+// real network would have to carry.
+// Needs the Postgres from docker-compose.yml, like CustomerDaoBenchmark.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(16)
+public class CustomerCompressionBenchmark {
+
+    @Param({"identity", "gzip"})
+    private String encoding;
+
+    @Param({"HTTP_1_1", "HTTP_2"})
+    private HttpClient.Version version;
+
+    @Param({"page", "all"})
+    private String listing;
+
+    private ConfigurableApplicationContext context;
+    private ExecutorService clientExecutor;
+    private HttpClient client;
+    private HttpRequest request;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Transferred {
+        public long wireBytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Main.class)
+                .properties(
+                        "server.port=0",
+                        "spring.jpa.show-sql=false"
+                )
+                .run();
+
+        String port = context.getEnvironment().getProperty("local.server.port");
+        String query = listing.equals("page") ? "?limit=10" : "";
+        clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        // HTTP_2 on a plain http:// URI upgrades the connection to h2c
+        client = HttpClient.newBuilder()
+                .version(version)
+                .executor(clientExecutor)
+                .build();
+        request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/customers" + query))
+                .header("Accept-Encoding", encoding)
+                .GET()
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        clientExecutor.close();
+        context.close();
+    }
+
+    @Benchmark
+    public void getCustomers(Transferred transferred, Blackhole blackhole) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if(response.statusCode() != 200) {
+            throw new IllegalStateException("unexpected status " + response.statusCode());
+        }
+        transferred.wireBytes += response.body().length;
+
+        boolean gzipped = response.headers().firstValue("Content-Encoding").filter("gzip"::equals).isPresent();
+        try (InputStream body = gzipped
+                ? new GZIPInputStream(new ByteArrayInputStream(response.body()))
+                : new ByteArrayInputStream(response.body())) {
+            blackhole.consume(body.readAllBytes());
+        }
+    }
+}
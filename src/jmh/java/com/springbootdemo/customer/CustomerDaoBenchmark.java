@@ -0,0 +1,177 @@
+package com.springbootdemo.customer;
+
+import com.springbootdemo.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The Postgres backed DAOs use the datasource from application.yml, so start
+// the database from docker-compose.yml first (or pass -Dspring.datasource.url=...).
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerDaoBenchmark {
+
+    private static final int FIXTURE_SIZE = 1000;
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"jdbc", "jpa", "list", "cached"})
+    private String dao;
+
+    private ConfigurableApplicationContext context;
+    private CustomerDao customerDao;
+
+    private final String run = UUID.randomUUID().toString();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final List<Integer> fixtureIds = new ArrayList<>();
+    private final List<String> fixtureEmails = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Main.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=false")
+                .run();
+        customerDao = context.getBean(dao, CustomerDao.class);
+
+        for (int i = 0; i < FIXTURE_SIZE; i++) {
+            Customer customer = newCustomer();
+            customerDao.insertCustomer(customer);
+            fixtureIds.add(customer.getId());
+            fixtureEmails.add(customer.getEmail());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        // the jdbc batch insert does not hand back ids, so find this run's rows by email
+        List<Integer> ids = new ArrayList<>();
+        customerDao.streamAllCustomers(customer -> {
+            if(customer.getEmail().startsWith(emailPrefix())) {
+                ids.add(customer.getId());
+            }
+        });
+        ids.forEach(customerDao::deleteCustomerById);
+        context.close();
+    }
+
+    @Benchmark
+    public List<Customer> selectAllCustomers() {
+        return customerDao.selectAllCustomers();
+    }
+
+    @Benchmark
+    public List<Customer> selectCustomersAfterId() {
+        return customerDao.selectCustomersAfterId(randomFixtureId(), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<CustomerEmail> selectCustomerEmailsAfterId() {
+        return customerDao.selectCustomerEmailsAfterId(randomFixtureId(), PAGE_SIZE);
+    }
+
+    @Benchmark
+    public void streamAllCustomers(Blackhole blackhole) {
+        customerDao.streamAllCustomers(blackhole::consume);
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerById() {
+        return customerDao.selectCustomerById(randomFixtureId());
+    }
+
+    @Benchmark
+    public boolean insertCustomer() {
+        return customerDao.insertCustomer(newCustomer());
+    }
+
+    @Benchmark
+    public int[] insertCustomers() {
+        List<Customer> customers = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            customers.add(newCustomer());
+        }
+        return customerDao.insertCustomers(customers);
+    }
+
+    @Benchmark
+    public boolean existPersonWithEmail() {
+        return customerDao.existPersonWithEmail(randomFixtureEmail());
+    }
+
+    @Benchmark
+    public Set<String> selectExistingEmails() {
+        List<String> emails = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            emails.add(i % 2 == 0 ? randomFixtureEmail() : newEmail());
+        }
+        return customerDao.selectExistingEmails(emails);
+    }
+
+    @Benchmark
+    public boolean existPersonWithId() {
+        return customerDao.existPersonWithId(randomFixtureId());
+    }
+
+    // a delete needs a row to remove, so this measures an insert plus a delete
+    @Benchmark
+    public boolean insertAndDeleteCustomer() {
+        Customer customer = newCustomer();
+        customerDao.insertCustomer(customer);
+        return customerDao.deleteCustomerById(customer.getId());
+    }
+
+    @Benchmark
+    public void updateCustomer() {
+        Customer update = new Customer();
+        update.setId(randomFixtureId());
+        update.setAge(ThreadLocalRandom.current().nextInt(16, 99));
+        customerDao.updateCustomer(update);
+    }
+
+    private Customer newCustomer() {
+        return new Customer("benchmark", newEmail(), 30);
+    }
+
+    private String newEmail() {
+        return emailPrefix() + sequence.incrementAndGet() + "@example.com";
+    }
+
+    private String emailPrefix() {
+        return "benchmark-" + run + "-";
+    }
+
+    private Integer randomFixtureId() {
+        return fixtureIds.get(ThreadLocalRandom.current().nextInt(fixtureIds.size()));
+    }
+
+    private String randomFixtureEmail() {
+        return fixtureEmails.get(ThreadLocalRandom.current().nextInt(fixtureEmails.size()));
+    }
+}
@@ -0,0 +1,93 @@
+package com.springbootdemo.customer;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Writing and reading a customer list page in each format the controllers negotiate.
+// The encodedBytes counter is the payload bytes written or read per millisecond, divided
+// by the score it gives the payload size of the format.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerEncodingBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    private String format;
+
+    @Param({"100", "1000"})
+    private int size;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private List<Customer> customers;
+    private byte[] encoded;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Encoded {
+        public long encodedBytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Jackson2ObjectMapperBuilder builder = switch (format) {
+            case "json" -> Jackson2ObjectMapperBuilder.json();
+            case "smile" -> Jackson2ObjectMapperBuilder.smile();
+            case "cbor" -> Jackson2ObjectMapperBuilder.cbor();
+            default -> throw new IllegalArgumentException(format);
+        };
+        ObjectMapper mapper = builder.build();
+        writer = mapper.writerFor(new TypeReference<List<Customer>>() { });
+        reader = mapper.readerFor(new TypeReference<List<Customer>>() { });
+
+        customers = new ArrayList<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < size; i++) {
+            customers.add(new Customer(
+                    100_000 + i,
+                    "customer " + random.nextInt(1_000_000),
+                    "customer" + random.nextInt(1_000_000) + "@example.com",
+                    random.nextInt(18, 90),
+                    random.nextInt(10)));
+        }
+        encoded = writer.writeValueAsBytes(customers);
+    }
+
+    @Benchmark
+    public byte[] write(Encoded counter) throws IOException {
+        byte[] bytes = writer.writeValueAsBytes(customers);
+        counter.encodedBytes += bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public List<Customer> read(Encoded counter) throws IOException {
+        counter.encodedBytes += encoded.length;
+        return reader.readValue(encoded);
+    }
+}
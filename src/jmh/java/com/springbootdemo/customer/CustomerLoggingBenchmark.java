@@ -0,0 +1,114 @@
+package com.springbootdemo.customer;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// What the old System.out.println in CustomerJDBCDataAccessService cost compared to
+// the logger, disabled (the default DEBUG level) and enabled behind the async appender.
+// Everything is written to /dev/null, a terminal or a container log pipe is slower.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class CustomerLoggingBenchmark {
+
+    private PrintStream stdout;
+    private LoggerContext loggerContext;
+    private org.slf4j.Logger disabledLogger;
+    private org.slf4j.Logger asyncLogger;
+
+    @Setup(Level.Trial)
+    public void setUp() throws FileNotFoundException {
+        // the same shape as System.out: a locked, line flushed PrintStream over a buffer
+        stdout = new PrintStream(new BufferedOutputStream(new FileOutputStream("/dev/null"), 8192), true);
+
+        loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+        loggerContext.reset();
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern("%d %5p [%t] %logger{39} : %m %kvp%n");
+        encoder.start();
+
+        OutputStreamAppender<ILoggingEvent> devNull = new OutputStreamAppender<>();
+        devNull.setContext(loggerContext);
+        devNull.setEncoder(encoder);
+        devNull.setOutputStream(new FileOutputStream("/dev/null"));
+        devNull.start();
+
+        // configured like logback-spring.xml
+        AsyncAppender asyncAppender = new AsyncAppender();
+        asyncAppender.setContext(loggerContext);
+        asyncAppender.setQueueSize(8192);
+        asyncAppender.setDiscardingThreshold(0);
+        asyncAppender.setNeverBlock(true);
+        asyncAppender.addAppender(devNull);
+        asyncAppender.start();
+
+        ch.qos.logback.classic.Logger root = loggerContext.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        root.setLevel(ch.qos.logback.classic.Level.INFO);
+        root.addAppender(asyncAppender);
+
+        disabledLogger = loggerContext.getLogger("benchmark.disabled");
+        ch.qos.logback.classic.Logger enabled = loggerContext.getLogger("benchmark.async");
+        enabled.setLevel(ch.qos.logback.classic.Level.DEBUG);
+        asyncLogger = enabled;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stdout.close();
+        loggerContext.stop();
+    }
+
+    @Benchmark
+    public void stdout() {
+        int result = ThreadLocalRandom.current().nextInt(2);
+        stdout.println("deleteCustomerById = " + result);
+    }
+
+    @Benchmark
+    public void loggerDisabled() {
+        int result = ThreadLocalRandom.current().nextInt(2);
+        disabledLogger.atDebug()
+                .addKeyValue("id", 42)
+                .addKeyValue("rows", result)
+                .log("delete customer");
+    }
+
+    @Benchmark
+    public void loggerAsync() {
+        int result = ThreadLocalRandom.current().nextInt(2);
+        asyncLogger.atDebug()
+                .addKeyValue("id", 42)
+                .addKeyValue("rows", result)
+                .log("delete customer");
+    }
+}
@@ -0,0 +1,180 @@
+package com.springbootdemo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.reactivestreams.Publisher;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.core.MethodParameter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.AbstractJackson2Encoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.util.MimeType;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Smile (application/x-jackson-smile) and CBOR (application/cbor) next to JSON, both ways,
+// chosen by Accept and Content-Type. The mappers come from Boot's builder, so they follow
+// the same spring.jackson settings and annotations as the JSON one.
+@Configuration
+public class BinaryFormatsConfig {
+
+    static final MimeType APPLICATION_SMILE = new MimeType("application", "x-jackson-smile");
+    private static final List<MimeType> NEGOTIATED = List.of(MediaType.APPLICATION_JSON, APPLICATION_SMILE,
+            MediaType.APPLICATION_CBOR, MediaType.APPLICATION_PROBLEM_JSON);
+
+    // HttpMessageConverters puts these in place of the Smile and CBOR converters it would add
+    // itself, after the JSON one, so JSON stays the default
+    @Bean
+    @Profile("!reactive")
+    MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    @Bean
+    @Profile("!reactive")
+    MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    // The codecs fall back to the JSON mime types when given none, so they're spelled out.
+    // Custom codecs go ahead of the default ones, so JSON is registered again in front of CBOR
+    // to stay the answer to Accept: */*. Flux bodies are written as one array: Jackson2CborEncoder
+    // refuses a Flux and Jackson2SmileEncoder joins the elements with JSON's text brackets and commas.
+    @Bean
+    @Profile("reactive")
+    CodecCustomizer binaryFormatsCodecCustomizer(Jackson2ObjectMapperBuilder builder, ObjectMapper objectMapper) {
+        ObjectMapper smileMapper = builder.factory(new SmileFactory()).build();
+        ObjectMapper cborMapper = builder.factory(new CBORFactory()).build();
+        return configurer -> {
+            configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smileMapper, APPLICATION_SMILE));
+            configurer.defaultCodecs().jackson2SmileEncoder(new CollectingSmileEncoder(smileMapper));
+            configurer.customCodecs().register(new Jackson2JsonEncoder(objectMapper));
+            configurer.customCodecs().register(new Jackson2CborDecoder(cborMapper, MediaType.APPLICATION_CBOR));
+            configurer.customCodecs().register(new CollectingCborEncoder(cborMapper));
+        };
+    }
+
+    // a body that Accept picked the format of differs by Accept, caches have to know
+    @Bean
+    @Profile("!reactive")
+    VaryByAcceptAdvice varyByAcceptAdvice() {
+        return new VaryByAcceptAdvice();
+    }
+
+    @Bean
+    @Profile("reactive")
+    WebFilter varyByAcceptFilter() {
+        return (exchange, chain) -> {
+            var response = exchange.getResponse();
+            response.beforeCommit(() -> {
+                varyByAccept(response.getHeaders().getContentType(), response.getHeaders());
+                return Mono.empty();
+            });
+            return chain.filter(exchange);
+        };
+    }
+
+    @ControllerAdvice
+    static class VaryByAcceptAdvice implements ResponseBodyAdvice<Object> {
+
+        @Override
+        public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+            return true;
+        }
+
+        @Override
+        public Object beforeBodyWrite(Object body,
+                                      MethodParameter returnType,
+                                      MediaType selectedContentType,
+                                      Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                      ServerHttpRequest request,
+                                      ServerHttpResponse response) {
+            varyByAccept(selectedContentType, response.getHeaders());
+            return body;
+        }
+    }
+
+    private static void varyByAccept(MediaType contentType, HttpHeaders headers) {
+        if(contentType == null || NEGOTIATED.stream().noneMatch(contentType::isCompatibleWith)) {
+            return;
+        }
+        if(headers.getVary().stream().noneMatch(HttpHeaders.ACCEPT::equalsIgnoreCase)) {
+            List<String> vary = new ArrayList<>(headers.getVary());
+            vary.add(HttpHeaders.ACCEPT);
+            headers.setVary(vary);
+        }
+    }
+
+    static class CollectingSmileEncoder extends Jackson2SmileEncoder {
+
+        CollectingSmileEncoder(ObjectMapper mapper) {
+            super(mapper, APPLICATION_SMILE);
+        }
+
+        @Override
+        public Flux<DataBuffer> encode(Publisher<?> inputStream,
+                                       DataBufferFactory bufferFactory,
+                                       ResolvableType elementType,
+                                       MimeType mimeType,
+                                       Map<String, Object> hints) {
+            return encodeAsList(this, inputStream, bufferFactory, elementType, mimeType, hints);
+        }
+    }
+
+    static class CollectingCborEncoder extends Jackson2CborEncoder {
+
+        CollectingCborEncoder(ObjectMapper mapper) {
+            super(mapper, MediaType.APPLICATION_CBOR);
+        }
+
+        @Override
+        public Flux<DataBuffer> encode(Publisher<?> inputStream,
+                                       DataBufferFactory bufferFactory,
+                                       ResolvableType elementType,
+                                       MimeType mimeType,
+                                       Map<String, Object> hints) {
+            return encodeAsList(this, inputStream, bufferFactory, elementType, mimeType, hints);
+        }
+    }
+
+    private static Flux<DataBuffer> encodeAsList(AbstractJackson2Encoder encoder,
+                                                 Publisher<?> inputStream,
+                                                 DataBufferFactory bufferFactory,
+                                                 ResolvableType elementType,
+                                                 MimeType mimeType,
+                                                 Map<String, Object> hints) {
+        if(inputStream instanceof Mono<?> mono) {
+            return mono.map(value -> encoder.encodeValue(value, bufferFactory, elementType, mimeType, hints)).flux();
+        }
+        ResolvableType listType = ResolvableType.forClassWithGenerics(List.class, elementType);
+        return Flux.from(inputStream)
+                .collectList()
+                .map(values -> encoder.encodeValue(values, bufferFactory, listType, mimeType, hints))
+                .flux();
+    }
+}
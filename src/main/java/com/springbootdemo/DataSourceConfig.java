@@ -0,0 +1,68 @@
+package com.springbootdemo;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// a write pool on spring.datasource and a read pool per replica, tuned under
+// customer.datasource.write / .read; Boot binds the hikaricp.* pool metrics to the write
+// pool and ReadWriteRoutingDataSource to the read pools, tagged with their pool name
+@Configuration
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("customer.datasource.write")
+    HikariDataSource writeDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    // without replicas the single read pool connects to spring.datasource as well
+    @Bean
+    ReadWriteRoutingDataSource routingDataSource(HikariDataSource writeDataSource,
+                                                 DataSourceProperties properties,
+                                                 Environment environment) {
+        Binder binder = Binder.get(environment);
+        List<String> replicas = binder.bind("customer.datasource.replicas", Bindable.listOf(String.class))
+                .orElse(List.of());
+
+        List<HikariDataSource> readDataSources = new ArrayList<>();
+        List<String> urls = replicas.isEmpty() ? List.of(properties.determineUrl()) : replicas;
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource readDataSource = properties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(urls.get(i))
+                    .build();
+            binder.bind("customer.datasource.read", Bindable.ofInstance(readDataSource));
+            if(!replicas.isEmpty()) {
+                readDataSource.setPoolName(readDataSource.getPoolName() + "-" + i);
+            }
+            readDataSources.add(readDataSource);
+        }
+
+        // nothing to wait for when the reads hit the primary
+        Duration readYourWrites = replicas.isEmpty()
+                ? Duration.ZERO
+                : binder.bind("customer.datasource.read-your-writes", Duration.class).orElse(Duration.ZERO);
+        return new ReadWriteRoutingDataSource(writeDataSource, readDataSources, readYourWrites);
+    }
+
+    // the lazy proxy only borrows a connection at the first statement, after the transaction
+    // has been marked read only, so the routing sees the flag (and a cache hit borrows none)
+    @Bean
+    @Primary
+    DataSource dataSource(ReadWriteRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
@@ -0,0 +1,46 @@
+package com.springbootdemo;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+// opt in with --spring.profiles.active=reactive
+@Configuration
+@Profile("reactive")
+public class R2dbcConfig implements DisposableBean {
+
+    // deliberately not a bean: Boot backs off the JDBC DataSource, and with it
+    // Flyway and JPA, as soon as a ConnectionFactory bean exists
+    private ConnectionPool connectionPool;
+
+    @Bean
+    DatabaseClient databaseClient(@Value("${spring.r2dbc.url}") String url,
+                                  @Value("${spring.r2dbc.username}") String username,
+                                  @Value("${spring.r2dbc.password}") String password,
+                                  @Value("${spring.r2dbc.pool.max-size}") int maxSize) {
+        connectionPool = new ConnectionPool(
+                ConnectionPoolConfiguration.builder(ConnectionFactories.get(
+                                ConnectionFactoryOptions.parse(url).mutate()
+                                        .option(ConnectionFactoryOptions.USER, username)
+                                        .option(ConnectionFactoryOptions.PASSWORD, password)
+                                        .build()))
+                        .maxSize(maxSize)
+                        .build()
+        );
+        return DatabaseClient.create(connectionPool);
+    }
+
+    @Override
+    public void destroy() {
+        if(connectionPool != null) {
+            connectionPool.dispose();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.springbootdemo;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// read only transactions go round robin over the read pools, everything else to the write pool.
+// Once a caller (ReadYourWrites) closes a write connection, its read only transactions stay on
+// the write pool for readYourWrites, long enough for the replicas to catch up with what it just
+// wrote. Other callers' reads aren't affected, and threads without a caller never stick
+class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements MeterBinder, AutoCloseable {
+
+    private final String writeKey;
+    private final List<HikariDataSource> readDataSources;
+    private final long readYourWritesMillis;
+    private final AtomicInteger nextRead = new AtomicInteger();
+
+    ReadWriteRoutingDataSource(HikariDataSource writeDataSource,
+                               List<HikariDataSource> readDataSources,
+                               Duration readYourWrites) {
+        this.writeKey = writeDataSource.getPoolName();
+        this.readDataSources = readDataSources;
+        this.readYourWritesMillis = readYourWrites.toMillis();
+
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        targetDataSources.put(writeKey, writeDataSource);
+        for (HikariDataSource readDataSource : readDataSources) {
+            targetDataSources.put(readDataSource.getPoolName(), readDataSource);
+        }
+        setTargetDataSources(targetDataSources);
+        setDefaultTargetDataSource(writeDataSource);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if(!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || readsOwnWrites()) {
+            return writeKey;
+        }
+        int next = Math.floorMod(nextRead.getAndIncrement(), readDataSources.size());
+        return readDataSources.get(next).getPoolName();
+    }
+
+    private static boolean readsOwnWrites() {
+        ReadYourWrites caller = ReadYourWrites.current();
+        return caller != null && caller.readsPrimary(System.currentTimeMillis());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Connection connection = super.getConnection();
+        ReadYourWrites caller = ReadYourWrites.current();
+        if(caller == null || readYourWritesMillis == 0
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return connection;
+        }
+        return recordWriteOnClose(connection, caller);
+    }
+
+    private Connection recordWriteOnClose(Connection connection, ReadYourWrites caller) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    } finally {
+                        if(method.getName().equals("close")) {
+                            caller.wrote(System.currentTimeMillis() + readYourWritesMillis);
+                        }
+                    }
+                });
+    }
+
+    // the read pools aren't beans, so Boot's Hikari metrics don't reach them
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (HikariDataSource readDataSource : readDataSources) {
+            if(readDataSource.getMetricsTrackerFactory() == null) {
+                readDataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        readDataSources.forEach(HikariDataSource::close);
+    }
+}
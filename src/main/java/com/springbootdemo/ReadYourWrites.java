@@ -0,0 +1,46 @@
+package com.springbootdemo;
+
+import java.util.function.LongConsumer;
+
+// the caller the current thread works for, as far as reading its own writes goes: until
+// primaryUntil (epoch millis) its read only transactions go to the write pool. Threads without
+// one (Flyway, the health check, background workers) never stick to the write pool
+final class ReadYourWrites implements AutoCloseable {
+
+    private static final ThreadLocal<ReadYourWrites> CURRENT = new ThreadLocal<>();
+
+    private final LongConsumer onWrite;
+    private volatile long primaryUntil;
+
+    private ReadYourWrites(long primaryUntil, LongConsumer onWrite) {
+        this.primaryUntil = primaryUntil;
+        this.onWrite = onWrite;
+    }
+
+    // onWrite gets the new primaryUntil, to hand back to the caller for its next request
+    static ReadYourWrites open(long primaryUntil, LongConsumer onWrite) {
+        ReadYourWrites caller = new ReadYourWrites(primaryUntil, onWrite);
+        CURRENT.set(caller);
+        return caller;
+    }
+
+    static ReadYourWrites current() {
+        return CURRENT.get();
+    }
+
+    boolean readsPrimary(long now) {
+        return now < primaryUntil;
+    }
+
+    void wrote(long primaryUntil) {
+        if(primaryUntil > this.primaryUntil) {
+            this.primaryUntil = primaryUntil;
+            onWrite.accept(primaryUntil);
+        }
+    }
+
+    @Override
+    public void close() {
+        CURRENT.remove();
+    }
+}
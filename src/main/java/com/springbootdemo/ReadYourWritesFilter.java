@@ -0,0 +1,58 @@
+package com.springbootdemo;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// each request is a caller of its own; a write hands the client a cookie carrying until when its
+// reads have to go to the primary, so its next requests (to any instance) see the write too
+@Component
+@Profile("!reactive")
+class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String COOKIE = "read-your-writes";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        try (ReadYourWrites ignored = ReadYourWrites.open(primaryUntil(request), until -> setCookie(response, until))) {
+            chain.doFilter(request, response);
+        }
+    }
+
+    private static long primaryUntil(HttpServletRequest request) {
+        if(request.getCookies() == null) {
+            return 0;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if(cookie.getName().equals(COOKIE)) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    // writes happen before the controller returns, the response isn't committed yet
+    private static void setCookie(HttpServletResponse response, long until) {
+        if(response.isCommitted()) {
+            return;
+        }
+        Cookie cookie = new Cookie(COOKIE, Long.toString(until));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) Math.max(1, (until - System.currentTimeMillis() + 999) / 1000));
+        response.addCookie(cookie);
+    }
+}
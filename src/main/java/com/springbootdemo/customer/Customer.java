@@ -1,5 +1,6 @@
 package com.springbootdemo.customer;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 
 import java.util.Objects;
@@ -30,6 +31,11 @@ public class Customer {
     private String email;
     @Column(nullable = false)
     private Integer age;
+    // bumped by every update; clients see it as the ETag, not in the body
+    @Version
+    @Column(nullable = false)
+    @JsonIgnore
+    private Integer version;
 
     public Customer() {}
 
@@ -40,12 +46,27 @@ public class Customer {
         this.age = age;
     }
 
+    public Customer(Integer id, String name, String email, Integer age, Integer version) {
+        this(id, name, email, age);
+        this.version = version;
+    }
+
     public Customer(String name, String email, Integer age) {
         this.name = name;
         this.email = email;
         this.age = age;
     }
 
+    public static Customer copyOf(Customer customer) {
+        return new Customer(
+                customer.getId(),
+                customer.getName(),
+                customer.getEmail(),
+                customer.getAge(),
+                customer.getVersion()
+        );
+    }
+
     public Integer getId() {
         return id;
     }
@@ -78,6 +99,14 @@ public class Customer {
         this.age = age;
     }
 
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,134 @@
+package com.springbootdemo.customer;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+// notifications sent while not listening are lost, so the cache is off and emptied until it LISTENs again
+@Component
+@Profile("!reactive")
+public class CustomerCacheInvalidationListener implements SmartLifecycle {
+
+    static final String CHANNEL = "customer_cache";
+    private static final Logger log = LoggerFactory.getLogger(CustomerCacheInvalidationListener.class);
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+    // a server or network gone away doesn't show while waiting for notifications
+    private static final Duration VALIDATION_INTERVAL = Duration.ofSeconds(10);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final DataSource dataSource;
+    private final CustomerNearCache cache;
+    private final Duration retryDelay;
+    private volatile boolean running;
+    private Thread listener;
+
+    // not from the pools, the connection is held as long as the application runs
+    @Autowired
+    public CustomerCacheInvalidationListener(DataSourceProperties properties,
+                                             @Qualifier("cached") CustomerNearCache cache) {
+        this(properties.initializeDataSourceBuilder().type(SimpleDriverDataSource.class).build(),
+                cache, Duration.ofSeconds(1));
+    }
+
+    CustomerCacheInvalidationListener(DataSource dataSource, CustomerNearCache cache, Duration retryDelay) {
+        this.dataSource = dataSource;
+        this.cache = cache;
+        this.retryDelay = retryDelay;
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                cache.setEnabled(true);
+                log.info("Listening for customer cache invalidations");
+                receive(connection);
+            } catch (SQLException | RuntimeException e) {
+                // a notification that wasn't acted on may be lost, whatever went wrong
+                cache.setEnabled(false);
+                if(!running) {
+                    return;
+                }
+                log.warn("Customer cache invalidations can't be received, retrying in {}", retryDelay, e);
+                try {
+                    Thread.sleep(retryDelay.toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void receive(Connection connection) throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        long validated = System.nanoTime();
+        while (running) {
+            PGNotification[] notifications = pgConnection.getNotifications((int) POLL_TIMEOUT.toMillis());
+            for (PGNotification notification : notifications) {
+                evict(notification.getParameter());
+            }
+            if(notifications.length == 0 && System.nanoTime() - validated >= VALIDATION_INTERVAL.toNanos()) {
+                if(!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    throw new SQLException("customer cache invalidation connection is no longer valid");
+                }
+                validated = System.nanoTime();
+            }
+        }
+    }
+
+    private void evict(String id) {
+        if(id.isEmpty()) {
+            cache.evictAll();
+            return;
+        }
+        try {
+            cache.evict(Integer.valueOf(id));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring customer cache invalidation for id {}", id);
+        }
+    }
+
+    // the cache is off from here until the listener has connected
+    @Override
+    public void start() {
+        cache.setEnabled(false);
+        running = true;
+        listener = Thread.ofPlatform()
+                .name("customer-cache-invalidation")
+                .daemon(true)
+                .start(this::listen);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            listener.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        cache.setEnabled(false);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
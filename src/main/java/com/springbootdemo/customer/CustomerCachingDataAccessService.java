@@ -0,0 +1,286 @@
+package com.springbootdemo.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// writes on other instances are evicted once CustomerCacheInvalidationListener hears of them
+@Repository("cached")
+@Profile("!reactive")
+public class CustomerCachingDataAccessService implements CustomerDao, CustomerNearCache, MeterBinder {
+
+    private final CustomerDao customerDao;
+    private final Cache<Integer, Customer> customersById;
+    // only a hint: the customer cached under the id still has to have the email
+    private final Cache<String, Integer> idsByEmail;
+    // a load that overlaps an eviction of its id may have read the row before the write, so isn't kept
+    private final ConcurrentMap<Integer, Loading> loading = new ConcurrentHashMap<>();
+    private volatile boolean enabled = true;
+
+    private static final class Loading {
+        private int loads;
+        private long generation;
+    }
+
+    @Autowired
+    public CustomerCachingDataAccessService(
+            @Qualifier("coalescing") CustomerDao customerDao,
+            @Value("${customer.cache.maximum-size}") long maximumSize,
+            @Value("${customer.cache.expire-after-write}") Duration expireAfterWrite) {
+        this(customerDao, maximumSize, expireAfterWrite, Ticker.systemTicker(), ForkJoinPool.commonPool());
+    }
+
+    CustomerCachingDataAccessService(CustomerDao customerDao,
+                                     long maximumSize,
+                                     Duration expireAfterWrite,
+                                     Ticker ticker,
+                                     Executor executor) {
+        this.customerDao = customerDao;
+        this.customersById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .ticker(ticker)
+                .executor(executor)
+                .recordStats()
+                .build();
+        this.idsByEmail = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .ticker(ticker)
+                .executor(executor)
+                .build();
+    }
+
+    public CacheStats stats() {
+        return customersById.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, customersById, "customersById");
+    }
+
+    @Override
+    public void evict(Integer id) {
+        if(customerDao instanceof CustomerNearCache nearCache) {
+            nearCache.evict(id);
+        }
+        invalidate(id);
+    }
+
+    @Override
+    public void evictAll() {
+        if(customerDao instanceof CustomerNearCache nearCache) {
+            nearCache.evictAll();
+        }
+        loading.replaceAll((id, load) -> {
+            load.generation++;
+            return load;
+        });
+        customersById.invalidateAll();
+        idsByEmail.invalidateAll();
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        evictAll();
+    }
+
+    private void invalidate(Integer id) {
+        loading.computeIfPresent(id, (key, load) -> {
+            load.generation++;
+            return load;
+        });
+        customersById.invalidate(id);
+    }
+
+    private long startLoading(Integer id) {
+        long[] generation = new long[1];
+        loading.compute(id, (key, load) -> {
+            Loading started = load == null ? new Loading() : load;
+            started.loads++;
+            generation[0] = started.generation;
+            return started;
+        });
+        return generation[0];
+    }
+
+    // only once what was loaded is in the cache, so an eviction can't fall between the two
+    private boolean finishLoading(Integer id, long generation) {
+        boolean[] evicted = new boolean[1];
+        loading.computeIfPresent(id, (key, load) -> {
+            evicted[0] = load.generation != generation;
+            load.loads--;
+            return load.loads == 0 ? null : load;
+        });
+        return evicted[0];
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return customerDao.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerFilter filter, CustomerSort sort) {
+        return customerDao.selectCustomers(filter, sort);
+    }
+
+    @Override
+    public List<Customer> searchCustomers(String term, int limit) {
+        return customerDao.searchCustomers(term, limit);
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer afterId, int limit) {
+        return customerDao.selectCustomersAfterId(afterId, limit);
+    }
+
+    @Override
+    public List<CustomerEmail> selectCustomerEmailsAfterId(Integer afterId, int limit) {
+        return customerDao.selectCustomerEmailsAfterId(afterId, limit);
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> action) {
+        customerDao.streamAllCustomers(action);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        if(!enabled) {
+            return customerDao.selectCustomerById(id);
+        }
+        long[] started = {-1};
+        Customer customer;
+        try {
+            customer = customersById.get(id, key -> {
+                started[0] = startLoading(key);
+                return customerDao.selectCustomerById(key)
+                        .map(this::indexEmail)
+                        .orElse(null);
+            });
+        } finally {
+            if(started[0] >= 0 && finishLoading(id, started[0])) {
+                customersById.invalidate(id);
+            }
+        }
+        return Optional.ofNullable(customer).map(Customer::copyOf);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        if(!enabled) {
+            return customerDao.selectCustomersByIds(ids);
+        }
+        Map<Integer, Long> started = new HashMap<>();
+        Map<Integer, Customer> customers;
+        try {
+            customers = customersById.getAll(ids, missing -> {
+                missing.forEach(id -> started.put(id, startLoading(id)));
+                return customerDao.selectCustomersByIds(List.copyOf(missing))
+                        .stream()
+                        .map(this::indexEmail)
+                        .collect(Collectors.toMap(Customer::getId, Function.identity()));
+            });
+        } finally {
+            List<Integer> evicted = new ArrayList<>();
+            started.forEach((id, generation) -> {
+                if(finishLoading(id, generation)) {
+                    evicted.add(id);
+                }
+            });
+            customersById.invalidateAll(evicted);
+        }
+        return customers.values().stream()
+                .map(Customer::copyOf)
+                .toList();
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        try {
+            return customerDao.insertCustomer(customer);
+        } finally {
+            if(customer.getId() != null) {
+                invalidate(customer.getId());
+            }
+        }
+    }
+
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        return customerDao.insertCustomers(customers);
+    }
+
+    @Override
+    public boolean existPersonWithEmail(String email) {
+        Integer id = idsByEmail.getIfPresent(email);
+        if(id != null) {
+            Customer customer = customersById.asMap().get(id);
+            if(customer != null && email.equals(customer.getEmail())) {
+                return true;
+            }
+        }
+        return customerDao.existPersonWithEmail(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return customerDao.selectExistingEmails(emails);
+    }
+
+    @Override
+    public boolean existPersonWithId(Integer id) {
+        return customerDao.existPersonWithId(id);
+    }
+
+    @Override
+    public boolean deleteCustomerById(Integer customerId) {
+        try {
+            return customerDao.deleteCustomerById(customerId);
+        } finally {
+            invalidate(customerId);
+        }
+    }
+
+    @Override
+    public boolean updateCustomer(Customer update) {
+        try {
+            return customerDao.updateCustomer(update);
+        } finally {
+            invalidate(update.getId());
+        }
+    }
+
+    private Customer indexEmail(Customer customer) {
+        idsByEmail.put(customer.getEmail(), customer.getId());
+        return customer;
+    }
+}
@@ -0,0 +1,152 @@
+package com.springbootdemo.customer;
+
+import com.springbootdemo.exception.RequestValidationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// waiting change requests hold no thread or connection; one poller answers all of them
+@Service
+public class CustomerChangeFeed implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerChangeFeed.class);
+    private static final int MAX_LIMIT = 1000;
+    private static final int MAX_WAIT_SECONDS = 60;
+    private static final Duration PURGE_INTERVAL = Duration.ofHours(1);
+    private static final int PURGE_CHUNK_SIZE = 10_000;
+
+    private final CustomerEventDataAccessService eventDao;
+    private final Duration pollInterval;
+    private final Duration retention;
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService scheduler;
+
+    public CustomerChangeFeed(CustomerEventDataAccessService eventDao,
+                              @Value("${customer.changes.poll-interval}") Duration pollInterval,
+                              @Value("${customer.changes.retention}") Duration retention) {
+        this.eventDao = eventDao;
+        this.pollInterval = pollInterval;
+        this.retention = retention;
+    }
+
+    private record Waiter(long since, int limit, long deadline, Consumer<CustomerChanges> callback) {
+    }
+
+    private record Page(long since, int limit) {
+    }
+
+    public void getChanges(long since, int limit, int wait, Consumer<CustomerChanges> callback) {
+        if(since < 0) {
+            throw new RequestValidationException("since must not be negative");
+        }
+        if(limit < 1 || limit > MAX_LIMIT) {
+            throw new RequestValidationException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        if(wait < 0 || wait > MAX_WAIT_SECONDS) {
+            throw new RequestValidationException("wait must be between 0 and " + MAX_WAIT_SECONDS + " seconds");
+        }
+        CustomerChanges changes = eventDao.selectChangesAfter(since, limit);
+        if(!changes.events().isEmpty() || wait == 0) {
+            callback.accept(changes);
+            return;
+        }
+        waiters.add(new Waiter(since, limit, System.nanoTime() + TimeUnit.SECONDS.toNanos(wait), callback));
+    }
+
+    // requests waiting on the same since get the same page, read once
+    void notifyWaiters() {
+        if(waiters.isEmpty()) {
+            return;
+        }
+        long latest;
+        try {
+            latest = eventDao.selectLatestTxid();
+        } catch (RuntimeException e) {
+            log.warn("Failed to check for customer changes", e);
+            return;
+        }
+        long now = System.nanoTime();
+        Map<Page, CustomerChanges> pages = new HashMap<>();
+        for (Iterator<Waiter> iterator = waiters.iterator(); iterator.hasNext(); ) {
+            Waiter waiter = iterator.next();
+            if(latest > waiter.since()) {
+                iterator.remove();
+                waiter.callback().accept(pages.computeIfAbsent(new Page(waiter.since(), waiter.limit()), this::read));
+            }
+            else if(now - waiter.deadline() >= 0) {
+                iterator.remove();
+                waiter.callback().accept(new CustomerChanges(List.of(), waiter.since()));
+            }
+        }
+    }
+
+    // on a failure the client gets no events and asks again from the same since
+    private CustomerChanges read(Page page) {
+        try {
+            return eventDao.selectChangesAfter(page.since(), page.limit());
+        } catch (RuntimeException e) {
+            log.warn("Failed to read customer changes after {}", page.since(), e);
+            return new CustomerChanges(List.of(), page.since());
+        }
+    }
+
+    void purge() {
+        Instant cutoff = Instant.now().minus(retention);
+        try {
+            int purged = 0;
+            int deleted;
+            do {
+                deleted = eventDao.deleteEventsBefore(cutoff, PURGE_CHUNK_SIZE);
+                purged += deleted;
+            } while (deleted == PURGE_CHUNK_SIZE);
+            if(purged > 0) {
+                log.info("Purged {} customer events older than {}", purged, cutoff);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to purge customer events", e);
+        }
+    }
+
+    @Override
+    public void start() {
+        // two threads, so a purge doesn't hold up the waiting requests
+        scheduler = Executors.newScheduledThreadPool(2, runnable -> Thread.ofPlatform()
+                .name("customer-changes")
+                .daemon(true)
+                .unstarted(runnable));
+        scheduler.scheduleWithFixedDelay(this::notifyWaiters,
+                pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::purge,
+                0, PURGE_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // requests still waiting get their empty answer now, ahead of the web server shutting down
+    @Override
+    public void stop() {
+        scheduler.shutdownNow();
+        scheduler = null;
+        for (Waiter waiter = waiters.poll(); waiter != null; waiter = waiters.poll()) {
+            waiter.callback().accept(new CustomerChanges(List.of(), waiter.since()));
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return scheduler != null;
+    }
+}
@@ -0,0 +1,10 @@
+package com.springbootdemo.customer;
+
+import java.util.List;
+
+// next goes into ?since= of the following request, also when there are no events
+public record CustomerChanges(
+        List<CustomerEvent> events,
+        long next
+) {
+}
@@ -0,0 +1,269 @@
+package com.springbootdemo.customer;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// ids asked for while a read runs go together as one selectCustomersByIds once it's done
+@Repository("coalescing")
+@Profile("!reactive")
+public class CustomerCoalescingDataAccessService implements CustomerDao, CustomerNearCache {
+
+    private final CustomerDao customerDao;
+    private final int maxBatchSize;
+    private final ConcurrentMap<Integer, CompletableFuture<Optional<Customer>>> inFlight = new ConcurrentHashMap<>();
+    private final Lock batchLock = new ReentrantLock();
+    // under batchLock: the last read started, null once it's done, and the ids waiting for it
+    private CompletableFuture<Void> running;
+    private Map<Integer, CompletableFuture<Optional<Customer>>> nextBatch;
+
+    @Autowired
+    public CustomerCoalescingDataAccessService(
+            BeanFactory beanFactory,
+            @Value("${customer.dao}") String dao,
+            @Value("${customer.coalescing.max-batch-size}") int maxBatchSize) {
+        this(beanFactory.getBean(dao, CustomerDao.class), maxBatchSize);
+    }
+
+    CustomerCoalescingDataAccessService(CustomerDao customerDao, int maxBatchSize) {
+        this.customerDao = customerDao;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        CompletableFuture<Optional<Customer>> lookup;
+        Map<Integer, CompletableFuture<Optional<Customer>>> batch = null;
+        Map<Integer, CompletableFuture<Optional<Customer>>> opened = null;
+        CompletableFuture<Void> previous = null;
+        CompletableFuture<Void> started = null;
+        batchLock.lock();
+        try {
+            lookup = inFlight.get(id);
+            if(lookup == null && nextBatch != null && nextBatch.containsKey(id)) {
+                // forgotten after a write but not read yet, so it will see the write
+                lookup = nextBatch.get(id);
+                inFlight.put(id, lookup);
+            }
+            if(lookup == null) {
+                lookup = new CompletableFuture<>();
+                inFlight.put(id, lookup);
+                if(running == null && nextBatch == null) {
+                    batch = Map.of(id, lookup);
+                }
+                else {
+                    if(nextBatch == null) {
+                        nextBatch = new LinkedHashMap<>();
+                        opened = nextBatch;
+                        previous = running;
+                    }
+                    nextBatch.put(id, lookup);
+                    if(nextBatch.size() >= maxBatchSize) {
+                        batch = nextBatch;
+                        nextBatch = null;
+                    }
+                }
+            }
+            if(batch != null) {
+                started = start();
+            }
+        } finally {
+            batchLock.unlock();
+        }
+
+        if(batch != null) {
+            load(batch, started);
+        }
+        else if(opened != null) {
+            awaitLoad(previous);
+            started = takeIfOpen(opened);
+            if(started != null) {
+                load(opened, started);
+            }
+        }
+        return join(lookup);
+    }
+
+    void awaitLoad(CompletableFuture<Void> load) {
+        load.join();
+    }
+
+    private CompletableFuture<Void> start() {
+        running = new CompletableFuture<>();
+        return running;
+    }
+
+    // null when the batch filled up and was loaded by someone else meanwhile
+    private CompletableFuture<Void> takeIfOpen(Map<Integer, CompletableFuture<Optional<Customer>>> batch) {
+        batchLock.lock();
+        try {
+            if(nextBatch != batch) {
+                return null;
+            }
+            nextBatch = null;
+            return start();
+        } finally {
+            batchLock.unlock();
+        }
+    }
+
+    // whatever the query throws, every waiter hears of it; none is left blocked in join
+    private void load(Map<Integer, CompletableFuture<Optional<Customer>>> batch, CompletableFuture<Void> load) {
+        try {
+            Map<Integer, Customer> customers = customerDao.selectCustomersByIds(List.copyOf(batch.keySet()))
+                    .stream()
+                    .collect(Collectors.toMap(Customer::getId, Function.identity()));
+            batch.forEach((id, lookup) -> lookup.complete(Optional.ofNullable(customers.get(id))));
+        } catch (Throwable e) {
+            batch.values().forEach(lookup -> lookup.completeExceptionally(e));
+        } finally {
+            batch.forEach(inFlight::remove);
+            finish(load);
+        }
+    }
+
+    private void finish(CompletableFuture<Void> load) {
+        batchLock.lock();
+        try {
+            if(running == load) {
+                running = null;
+            }
+        } finally {
+            batchLock.unlock();
+        }
+        load.complete(null);
+    }
+
+    Optional<Customer> join(CompletableFuture<Optional<Customer>> lookup) {
+        try {
+            return lookup.join();
+        } catch (CompletionException e) {
+            if(e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if(e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // a lookup already running may have read the row before the write committed
+    private void forget(Integer id) {
+        if(id != null) {
+            inFlight.remove(id);
+        }
+    }
+
+    @Override
+    public void evict(Integer id) {
+        forget(id);
+    }
+
+    @Override
+    public void evictAll() {
+        inFlight.clear();
+    }
+
+    // nothing is kept beyond the lookups in flight, so there's nothing to switch off
+    @Override
+    public void setEnabled(boolean enabled) {
+        evictAll();
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return customerDao.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerFilter filter, CustomerSort sort) {
+        return customerDao.selectCustomers(filter, sort);
+    }
+
+    @Override
+    public List<Customer> searchCustomers(String term, int limit) {
+        return customerDao.searchCustomers(term, limit);
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer afterId, int limit) {
+        return customerDao.selectCustomersAfterId(afterId, limit);
+    }
+
+    @Override
+    public List<CustomerEmail> selectCustomerEmailsAfterId(Integer afterId, int limit) {
+        return customerDao.selectCustomerEmailsAfterId(afterId, limit);
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> action) {
+        customerDao.streamAllCustomers(action);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        return customerDao.selectCustomersByIds(ids);
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        return customerDao.insertCustomer(customer);
+    }
+
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        return customerDao.insertCustomers(customers);
+    }
+
+    @Override
+    public boolean existPersonWithEmail(String email) {
+        return customerDao.existPersonWithEmail(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return customerDao.selectExistingEmails(emails);
+    }
+
+    @Override
+    public boolean existPersonWithId(Integer id) {
+        return customerDao.existPersonWithId(id);
+    }
+
+    @Override
+    public boolean deleteCustomerById(Integer customerId) {
+        try {
+            return customerDao.deleteCustomerById(customerId);
+        } finally {
+            forget(customerId);
+        }
+    }
+
+    @Override
+    public boolean updateCustomer(Customer update) {
+        try {
+            return customerDao.updateCustomer(update);
+        } finally {
+            forget(update.getId());
+        }
+    }
+}
@@ -1,44 +1,174 @@
 package com.springbootdemo.customer;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.springbootdemo.exception.ResourceNotFoundException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.net.URI;
 import java.util.List;
 
 @RestController
 @RequestMapping("api/v1/customers")
+@Profile("!reactive")
 public class CustomerController {
 
     private final CustomerService customerService;
+    private final ObjectWriter customerWriter;
+    private final CustomerChangeFeed changeFeed;
+    // only with customer.write-behind.enabled
+    private final CustomerWriteQueue writeQueue;
 
-    public CustomerController(CustomerService customerService) {
+    public CustomerController(CustomerService customerService,
+                              ObjectMapper objectMapper,
+                              CustomerChangeFeed changeFeed,
+                              ObjectProvider<CustomerWriteQueue> writeQueue) {
         this.customerService = customerService;
+        this.customerWriter = objectMapper.writerFor(Customer.class);
+        this.changeFeed = changeFeed;
+        this.writeQueue = writeQueue.getIfAvailable();
     }
 
+    // a matching If-None-Match gets a 304 before the body is serialized
     @GetMapping
-    public List<Customer> getCustomers() {
-        return customerService.getAllCustomers();
+    public ResponseEntity<List<Customer>> getCustomers(
+            CustomerFilter filter,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        List<Customer> customers = customerService.getCustomers(filter, sort);
+        return ResponseEntity.ok()
+                .eTag(CustomerETags.of(customers, CustomerETags.representation(accept)))
+                .body(customers);
+    }
+
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<Customer>> getCustomersByIds(
+            @RequestParam("ids") List<Integer> ids,
+            @RequestParam MultiValueMap<String, String> params,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        CustomerService.validateIdsOnly(params.keySet());
+        List<Customer> customers = customerService.getCustomersByIds(ids);
+        return ResponseEntity.ok()
+                .eTag(CustomerETags.of(customers, CustomerETags.representation(accept)))
+                .body(customers);
+    }
+
+    @GetMapping(params = {"limit", "!ids"})
+    public CustomerPage getCustomersPage(
+            @RequestParam(value = "after", defaultValue = "0") Integer after,
+            @RequestParam("limit") Integer limit) {
+        return customerService.getCustomersPage(after, limit);
+    }
+
+    // a cursor without a limit still gets a page, not the whole list
+    @GetMapping(params = {"after", "!limit", "!ids"})
+    public CustomerPage getCustomersPageAfter(
+            @RequestParam("after") Integer after,
+            @RequestParam(value = "limit", defaultValue = CustomerPage.DEFAULT_LIMIT) Integer limit) {
+        return customerService.getCustomersPage(after, limit);
+    }
+
+    @GetMapping("search")
+    public List<Customer> searchCustomers(
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", defaultValue = "20") Integer limit) {
+        return customerService.searchCustomers(query, limit);
+    }
+
+    @GetMapping("emails")
+    public CustomerEmailPage getCustomerEmailsPage(
+            @RequestParam(value = "after", defaultValue = "0") Integer after,
+            @RequestParam(value = "limit", defaultValue = CustomerPage.DEFAULT_LIMIT) Integer limit) {
+        return customerService.getCustomerEmailsPage(after, limit);
+    }
+
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportCustomers() {
+        StreamingResponseBody body = outputStream -> customerService.streamAllCustomers(
+                new CustomerNdjsonWriter(customerWriter, outputStream));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    // long poll: with nothing after since the request is parked, not its thread, for up to wait seconds
+    @GetMapping("changes")
+    public DeferredResult<CustomerChanges> getChanges(
+            @RequestParam(value = "since", defaultValue = "0") Long since,
+            @RequestParam(value = "limit", defaultValue = CustomerPage.DEFAULT_LIMIT) Integer limit,
+            @RequestParam(value = "wait", defaultValue = "30") Integer wait) {
+        DeferredResult<CustomerChanges> result = new DeferredResult<>();
+        changeFeed.getChanges(since, limit, wait, result::setResult);
+        return result;
     }
 
     @GetMapping("{customerId}")
-    public Customer getCustomer(
-            @PathVariable("customerId") Integer customerId) {
-        return customerService.getCustomer(customerId);
+    public ResponseEntity<Customer> getCustomer(
+            @PathVariable("customerId") Integer customerId,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        Customer customer = customerService.getCustomer(customerId);
+        return ResponseEntity.ok()
+                .eTag(CustomerETags.of(customer, CustomerETags.representation(accept)))
+                .body(customer);
     }
 
     @PostMapping
-    public void registerCustomer(@RequestBody CustomerRegistrationRequest request) {
+    public ResponseEntity<CustomerWriteStatus> registerCustomer(@RequestBody CustomerRegistrationRequest request) {
+        if(writeQueue != null) {
+            return accepted(writeQueue.register(request));
+        }
         customerService.addCustomer(request);
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("batch")
+    public List<CustomerRegistrationResult> registerCustomers(
+            @RequestBody List<CustomerRegistrationRequest> requests) {
+        return customerService.addCustomers(requests);
     }
 
     @DeleteMapping("{customerId}")
-    public void deleteCustomer(@PathVariable("customerId") Integer customerId){
+    public ResponseEntity<CustomerWriteStatus> deleteCustomer(@PathVariable("customerId") Integer customerId){
+        if(writeQueue != null) {
+            return accepted(writeQueue.delete(customerId));
+        }
         customerService.deleteCustomer(customerId);
+        return ResponseEntity.ok().build();
     }
 
     @PutMapping("{customerId}")
-    public void updateCustomer(
+    public ResponseEntity<CustomerWriteStatus> updateCustomer(
             @PathVariable("customerId") Integer customerId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody CustomerUpdateRequest updateRequest) {
-        customerService.updateCustomer(customerId, updateRequest);
+        if(writeQueue != null) {
+            return accepted(writeQueue.update(customerId, updateRequest, ifMatch));
+        }
+        customerService.updateCustomer(customerId, updateRequest, ifMatch);
+        return ResponseEntity.ok().build();
+    }
+
+    // where a write-behind write is at: PENDING until the worker has applied it, then APPLIED or FAILED
+    @GetMapping("writes/{writeId}")
+    public CustomerWriteStatus getWriteStatus(@PathVariable("writeId") String writeId) {
+        if(writeQueue == null) {
+            throw new ResourceNotFoundException("write [" + writeId + "] not found");
+        }
+        return writeQueue.getStatus(writeId)
+                .orElseThrow(() -> new ResourceNotFoundException("write [" + writeId + "] not found"));
+    }
+
+    private static ResponseEntity<CustomerWriteStatus> accepted(CustomerWriteStatus status) {
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/customers/writes/" + status.id()))
+                .body(status);
     }
 }
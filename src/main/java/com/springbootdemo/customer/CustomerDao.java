@@ -1,14 +1,25 @@
 package com.springbootdemo.customer;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface CustomerDao {
     List<Customer> selectAllCustomers();
+    List<Customer> selectCustomers(CustomerFilter filter, CustomerSort sort);
+    List<Customer> searchCustomers(String term, int limit);
+    List<Customer> selectCustomersAfterId(Integer afterId, int limit);
+    List<CustomerEmail> selectCustomerEmailsAfterId(Integer afterId, int limit);
+    void streamAllCustomers(Consumer<Customer> action);
     Optional<Customer> selectCustomerById(Integer id);
-    void insertCustomer(Customer customer);
+    List<Customer> selectCustomersByIds(Collection<Integer> ids);
+    boolean insertCustomer(Customer customer);
+    int[] insertCustomers(List<Customer> customers);
     boolean existPersonWithEmail(String email);
+    Set<String> selectExistingEmails(Collection<String> emails);
     boolean existPersonWithId(Integer id);
-    void deleteCustomerById(Integer customerId);
-    void updateCustomer(Customer update);
+    boolean deleteCustomerById(Integer customerId);
+    boolean updateCustomer(Customer update);
 }
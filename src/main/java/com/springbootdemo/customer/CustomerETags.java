@@ -0,0 +1,119 @@
+package com.springbootdemo.customer;
+
+import com.springbootdemo.exception.PreconditionFailedException;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Smile and CBOR bodies differ byte for byte from JSON, so their ETags carry a suffix
+final class CustomerETags {
+
+    private static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+    // in the order the message converters are registered, JSON first
+    private static final List<MediaType> REPRESENTATIONS =
+            List.of(MediaType.APPLICATION_JSON, APPLICATION_SMILE, MediaType.APPLICATION_CBOR);
+    private static final Map<MediaType, String> SUFFIXES = Map.of(
+            MediaType.APPLICATION_JSON, "",
+            APPLICATION_SMILE, "-smile",
+            MediaType.APPLICATION_CBOR, "-cbor");
+
+    private CustomerETags() {
+    }
+
+    static String of(Customer customer, MediaType representation) {
+        return "\"" + customer.getVersion() + SUFFIXES.get(representation) + "\"";
+    }
+
+    // weak, as Tomcat doesn't gzip a response carrying a strong ETag
+    static String of(List<Customer> customers, MediaType representation) {
+        ByteBuffer buffer = ByteBuffer.allocate(customers.size() * 2 * Integer.BYTES);
+        for (Customer customer : customers) {
+            buffer.putInt(customer.getId()).putInt(customer.getVersion());
+        }
+        return "W/\"" + DigestUtils.md5DigestAsHex(buffer.array()) + SUFFIXES.get(representation) + "\"";
+    }
+
+    // as the message converters pick: the most preferred accepted type, ties to the earlier converter
+    static MediaType representation(String accept) {
+        List<MediaType> accepted;
+        try {
+            accepted = accept == null || accept.isBlank()
+                    ? List.of(MediaType.ALL)
+                    : MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> compatible = new ArrayList<>();
+        for (MediaType acceptedType : accepted) {
+            for (MediaType representation : REPRESENTATIONS) {
+                if(acceptedType.isCompatibleWith(representation)) {
+                    compatible.add(representation.copyQualityValue(acceptedType));
+                }
+            }
+        }
+        MimeTypeUtils.sortBySpecificity(compatible);
+        return compatible.isEmpty()
+                ? MediaType.APPLICATION_JSON
+                : compatible.get(0).removeQualityValue();
+    }
+
+    static Integer matching(Set<Integer> versions, Integer currentVersion) {
+        if(!versions.contains(currentVersion)) {
+            throw new PreconditionFailedException("customer has been modified");
+        }
+        return currentVersion;
+    }
+
+    // "3", "4-cbor" is 3 and 4; weak entries never match an If-Match; null for no If-Match (or *)
+    static Set<Integer> versions(String ifMatch) {
+        if(ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        Set<Integer> versions = new LinkedHashSet<>();
+        int at = 0;
+        while (at < ifMatch.length()) {
+            char c = ifMatch.charAt(at);
+            if(c == ',' || Character.isWhitespace(c)) {
+                at++;
+                continue;
+            }
+            boolean weak = ifMatch.startsWith("W/", at);
+            int open = weak ? at + 2 : at;
+            int close = ifMatch.indexOf('"', open + 1);
+            if(open >= ifMatch.length() || ifMatch.charAt(open) != '"' || close < 0) {
+                break;
+            }
+            Integer version = weak ? null : versionOf(ifMatch.substring(open + 1, close));
+            if(version != null) {
+                versions.add(version);
+            }
+            at = close + 1;
+        }
+        if(versions.isEmpty()) {
+            throw new PreconditionFailedException("customer has been modified");
+        }
+        return versions;
+    }
+
+    private static Integer versionOf(String opaqueTag) {
+        String version = opaqueTag;
+        for (String suffix : SUFFIXES.values()) {
+            if(!suffix.isEmpty() && version.endsWith(suffix)) {
+                version = version.substring(0, version.length() - suffix.length());
+            }
+        }
+        try {
+            return Integer.valueOf(version);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
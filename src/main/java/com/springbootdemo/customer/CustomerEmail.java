@@ -0,0 +1,7 @@
+package com.springbootdemo.customer;
+
+public record CustomerEmail(
+        Integer id,
+        String email
+) {
+}
@@ -0,0 +1,9 @@
+package com.springbootdemo.customer;
+
+import java.util.List;
+
+public record CustomerEmailPage(
+        List<CustomerEmail> customers,
+        Integer nextCursor
+) {
+}
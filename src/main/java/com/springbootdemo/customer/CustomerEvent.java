@@ -0,0 +1,21 @@
+package com.springbootdemo.customer;
+
+import java.time.Instant;
+
+// a row of customer_event; name, email and age are the customer after the change, null for DELETED
+public record CustomerEvent(
+        long seq,
+        Integer customerId,
+        Type type,
+        String name,
+        String email,
+        Integer age,
+        Integer version,
+        Instant occurredAt
+) {
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+}
@@ -0,0 +1,80 @@
+package com.springbootdemo.customer;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+// only transactions below the oldest one still running are read, so a late commit is never skipped
+@Repository
+public class CustomerEventDataAccessService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CustomerEventDataAccessService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // the events of the transactions after since, at least limit events unless there are fewer,
+    // and never part of a transaction
+    @Transactional(readOnly = true)
+    public CustomerChanges selectChangesAfter(long since, int limit) {
+        var sql = """
+                WITH page AS (
+                    SELECT txid FROM customer_event
+                    WHERE txid > ? AND txid < pg_snapshot_xmin(pg_current_snapshot())::text::bigint
+                    ORDER BY txid, seq
+                    LIMIT ?
+                )
+                SELECT seq, txid, customer_id, type, name, email, age, version, occurred_at
+                FROM customer_event
+                WHERE txid > ? AND txid <= (SELECT max(txid) FROM page)
+                ORDER BY txid, seq
+                """;
+        List<Row> rows = jdbcTemplate.query(sql, ROW_MAPPER, since, limit, since);
+        long next = rows.isEmpty() ? since : rows.get(rows.size() - 1).txid();
+        return new CustomerChanges(rows.stream().map(Row::event).toList(), next);
+    }
+
+    // the last transaction selectChangesAfter would return, 0 without any
+    @Transactional(readOnly = true)
+    public long selectLatestTxid() {
+        var sql = """
+                SELECT coalesce(max(txid), 0) FROM customer_event
+                WHERE txid < pg_snapshot_xmin(pg_current_snapshot())::text::bigint
+                """;
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+
+    // the oldest events by seq, a chunk at a time so the delete holds its locks only briefly
+    public int deleteEventsBefore(Instant cutoff, int chunkSize) {
+        var sql = """
+                WITH oldest AS (
+                    SELECT seq, occurred_at FROM customer_event ORDER BY seq LIMIT ?
+                )
+                DELETE FROM customer_event
+                USING oldest
+                WHERE customer_event.seq = oldest.seq AND oldest.occurred_at < ?
+                """;
+        return jdbcTemplate.update(sql, chunkSize, Timestamp.from(cutoff));
+    }
+
+    private record Row(long txid, CustomerEvent event) {
+    }
+
+    private static final RowMapper<Row> ROW_MAPPER = (rs, rowNum) -> new Row(
+            rs.getLong(2),
+            new CustomerEvent(
+                    rs.getLong(1),
+                    rs.getInt(3),
+                    CustomerEvent.Type.valueOf(rs.getString(4)),
+                    rs.getString(5),
+                    rs.getString(6),
+                    (Integer) rs.getObject(7),
+                    (Integer) rs.getObject(8),
+                    rs.getTimestamp(9).toInstant()));
+}
@@ -0,0 +1,25 @@
+package com.springbootdemo.customer;
+
+// null criteria don't filter; namePrefix is case sensitive and the domain is what follows the first @
+public record CustomerFilter(
+        Integer minAge,
+        Integer maxAge,
+        String namePrefix,
+        String emailDomain
+) {
+    public boolean isEmpty() {
+        return minAge == null && maxAge == null && namePrefix == null && emailDomain == null;
+    }
+
+    public boolean matches(Customer customer) {
+        return (minAge == null || customer.getAge() >= minAge)
+                && (maxAge == null || customer.getAge() <= maxAge)
+                && (namePrefix == null || customer.getName().startsWith(namePrefix))
+                && (emailDomain == null || emailDomain.equals(emailDomainOf(customer.getEmail())));
+    }
+
+    // same as substring(email FROM position('@' IN email) + 1) in SQL, the whole email when there's no @
+    static String emailDomainOf(String email) {
+        return email.substring(email.indexOf('@') + 1);
+    }
+}
@@ -0,0 +1,40 @@
+package com.springbootdemo.customer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+// shared by the JDBC (?) and R2DBC ($1) DAOs; each criterion has an index from V4
+record CustomerFilterQuery(
+        String sql,
+        List<Object> args
+) {
+    static CustomerFilterQuery of(CustomerFilter filter, CustomerSort sort, IntFunction<String> placeholder) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if(filter.minAge() != null) {
+            args.add(filter.minAge());
+            conditions.add("age >= " + placeholder.apply(args.size()));
+        }
+        if(filter.maxAge() != null) {
+            args.add(filter.maxAge());
+            conditions.add("age <= " + placeholder.apply(args.size()));
+        }
+        if(filter.namePrefix() != null) {
+            args.add(escapeLike(filter.namePrefix()) + "%");
+            conditions.add("name LIKE " + placeholder.apply(args.size()));
+        }
+        if(filter.emailDomain() != null) {
+            args.add(filter.emailDomain());
+            conditions.add("substring(email FROM position('@' IN email) + 1) = " + placeholder.apply(args.size()));
+        }
+        String sql = "SELECT id, name, email, age, version FROM customer"
+                + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions))
+                + " ORDER BY " + sort.orderBy();
+        return new CustomerFilterQuery(sql, args);
+    }
+
+    static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -1,26 +1,51 @@
 package com.springbootdemo.customer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Repository("jdbc")
+@Profile("!reactive")
 public class CustomerJDBCDataAccessService implements CustomerDao{
 
+    private static final Logger log = LoggerFactory.getLogger(CustomerJDBCDataAccessService.class);
+    private static final int STREAM_FETCH_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
     private final CustomerRowMapper customerRowMapper;
+    private final Duration searchTimeout;
 
-    public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate, CustomerRowMapper customerRowMapper) {
+    public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate,
+                                         CustomerRowMapper customerRowMapper,
+                                         @Value("${customer.search.timeout}") Duration searchTimeout) {
         this.jdbcTemplate = jdbcTemplate;
         this.customerRowMapper = customerRowMapper;
+        this.searchTimeout = searchTimeout;
     }
 
+    // read only transactions are served by the read pool, see DataSourceConfig
     @Override
+    @Transactional(readOnly = true)
     public List<Customer> selectAllCustomers() {
         var sql = """
-                SELECT * FROM customer
+                SELECT id, name, email, age, version FROM customer
                 """;
 
         List<Customer> customers = jdbcTemplate.query(sql, customerRowMapper);
@@ -28,29 +53,148 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public List<Customer> selectCustomers(CustomerFilter filter, CustomerSort sort) {
+        CustomerFilterQuery query = CustomerFilterQuery.of(filter, sort, position -> "?");
+        return jdbcTemplate.query(query.sql(), customerRowMapper, query.args().toArray());
+    }
+
+    // the V5 index hands out the matches by distance
+    @Override
+    @Transactional(readOnly = true)
+    public List<Customer> searchCustomers(String term, int limit) {
+        jdbcTemplate.queryForObject(
+                "SELECT set_config('statement_timeout', ?, true)",
+                String.class,
+                Long.toString(searchTimeout.toMillis()));
+        var sql = """
+                SELECT id, name, email, age, version FROM customer
+                WHERE lower(name || ' ' || email) LIKE ?
+                ORDER BY ? <<-> lower(name || ' ' || email)
+                LIMIT ?
+                """;
+        return jdbcTemplate.query(
+                sql,
+                customerRowMapper,
+                "%" + CustomerFilterQuery.escapeLike(term) + "%",
+                term,
+                limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Customer> selectCustomersAfterId(Integer afterId, int limit) {
+        var sql = """
+                SELECT id, name, email, age, version FROM customer WHERE id > ? ORDER BY id LIMIT ?
+                """;
+        return jdbcTemplate.query(sql, customerRowMapper, afterId, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<CustomerEmail> selectCustomerEmailsAfterId(Integer afterId, int limit) {
+        var sql = """
+                SELECT id, email FROM customer WHERE id > ? ORDER BY id LIMIT ?
+                """;
+        return jdbcTemplate.query(
+                sql,
+                (rs, rowNum) -> new CustomerEmail(rs.getInt(1), rs.getString(2)),
+                afterId,
+                limit
+        );
+    }
+
+    // postgres only honours the fetch size (server side cursor) inside a transaction
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllCustomers(Consumer<Customer> action) {
+        var sql = """
+                SELECT id, name, email, age, version FROM customer
+                """;
+        jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement statement = connection.prepareStatement(sql);
+                    statement.setFetchSize(STREAM_FETCH_SIZE);
+                    return statement;
+                },
+                (RowCallbackHandler) rs -> action.accept(customerRowMapper.mapRow(rs, rs.getRow()))
+        );
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Optional<Customer> selectCustomerById(Integer id) {
         var sql = """
-                SELECT * FROM customer WHERE id = ?
+                SELECT id, name, email, age, version FROM customer WHERE id = ?
                 """;
         return jdbcTemplate.query(sql, customerRowMapper, id).stream().findFirst();
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
+    @Transactional(readOnly = true)
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        var sql = """
+                SELECT id, name, email, age, version FROM customer WHERE id = ANY(?)
+                """;
+        return jdbcTemplate.query(
+                sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("int4", ids.toArray())),
+                customerRowMapper
+        );
+    }
+
+    // the unique email constraint decides in the same statement, no row comes back when the email is taken
+    @Override
+    public boolean insertCustomer(Customer customer) {
         var sql = """
                 INSERT INTO customer (name, email, age)
                 VALUES (?, ?, ?)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id
                 """;
-        int result = jdbcTemplate.update(
+        List<Integer> ids = jdbcTemplate.query(
                 sql,
+                (rs, rowNum) -> rs.getInt("id"),
                 customer.getName(),
                 customer.getEmail(),
                 customer.getAge()
         );
-        System.out.println("jdbcTemplate.update = " + result);
+        log.atDebug()
+                .addKeyValue("rows", ids.size())
+                .log("insert customer");
+        if(ids.isEmpty()) {
+            return false;
+        }
+        customer.setId(ids.get(0));
+        return true;
+    }
+
+    // one batched round trip; a row whose email is already taken is skipped and reports 0
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        var sql = """
+                INSERT INTO customer (name, email, age)
+                VALUES (?, ?, ?)
+                ON CONFLICT (email) DO NOTHING
+                """;
+        return jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Customer customer = customers.get(i);
+                ps.setString(1, customer.getName());
+                ps.setString(2, customer.getEmail());
+                ps.setInt(3, customer.getAge());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return customers.size();
+            }
+        });
     }
 
     @Override
+    @Transactional(readOnly = true)
     public boolean existPersonWithEmail(String email) {
         var sql = """
                 SELECT count(id) FROM customer WHERE email = ?
@@ -60,6 +204,20 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        var sql = """
+                SELECT email FROM customer WHERE email = ANY(?)
+                """;
+        return new HashSet<>(jdbcTemplate.query(
+                sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", emails.toArray())),
+                (rs, rowNum) -> rs.getString("email")
+        ));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public boolean existPersonWithId(Integer id) {
         var sql = """
                 SELECT count(id) FROM customer WHERE id = ?
@@ -69,30 +227,51 @@ public class CustomerJDBCDataAccessService implements CustomerDao{
     }
 
     @Override
-    public void deleteCustomerById(Integer customerId) {
+    public boolean deleteCustomerById(Integer customerId) {
         var sql = """
                 DELETE FROM customer WHERE id = ?
                 """;
         int result = jdbcTemplate.update(sql, customerId);
-        System.out.println("deleteCustomerById = " + result);
+        log.atDebug()
+                .addKeyValue("id", customerId)
+                .addKeyValue("rows", result)
+                .log("delete customer");
+        return result > 0;
     }
 
     @Override
-    public void updateCustomer(Customer update) {
+    public boolean updateCustomer(Customer update) {
+        // only the non null (changed) columns go into the statement, all in one round trip
+        List<String> assignments = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
         if(update.getName() != null) {
-            String sql = "UPDATE customer SET name = ? WHERE id = ?";
-            int result = jdbcTemplate.update(sql, update.getName(), update.getId());
-            System.out.println("update customer name result = " + result);
+            assignments.add("name = ?");
+            args.add(update.getName());
         }
         if(update.getAge() != null) {
-            String sql = "UPDATE customer SET age = ? WHERE id = ?";
-            int result = jdbcTemplate.update(sql, update.getAge(), update.getId());
-            System.out.println("update customer age result = " + result);
+            assignments.add("age = ?");
+            args.add(update.getAge());
         }
         if(update.getEmail() != null) {
-            String sql = "UPDATE customer SET email = ? WHERE id = ?";
-            int result = jdbcTemplate.update(sql, update.getEmail(), update.getId());
-            System.out.println("update customer email result = " + result);
+            assignments.add("email = ?");
+            args.add(update.getEmail());
+        }
+        if(assignments.isEmpty()) {
+            return false;
+        }
+        assignments.add("version = version + 1");
+        String sql = "UPDATE customer SET " + String.join(", ", assignments) + " WHERE id = ?";
+        args.add(update.getId());
+        // a version makes it conditional, no row matches once someone else has updated the customer
+        if(update.getVersion() != null) {
+            sql += " AND version = ?";
+            args.add(update.getVersion());
         }
+        int result = jdbcTemplate.update(sql, args.toArray());
+        log.atDebug()
+                .addKeyValue("id", update.getId())
+                .addKeyValue("rows", result)
+                .log("update customer");
+        return result > 0;
     }
 }
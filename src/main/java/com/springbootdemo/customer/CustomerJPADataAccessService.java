@@ -1,17 +1,35 @@
 package com.springbootdemo.customer;
 
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Repository("jpa")
+@Profile("!reactive")
 public class CustomerJPADataAccessService implements CustomerDao{
 
     private final CustomerRepository customerRepository;
+    private final Duration searchTimeout;
 
-    public CustomerJPADataAccessService(CustomerRepository customerRepository) {
+    public CustomerJPADataAccessService(CustomerRepository customerRepository,
+                                        @Value("${customer.search.timeout}") Duration searchTimeout) {
         this.customerRepository = customerRepository;
+        this.searchTimeout = searchTimeout;
     }
 
     @Override
@@ -19,14 +37,78 @@ public class CustomerJPADataAccessService implements CustomerDao{
         return customerRepository.findAll();
     }
 
+    @Override
+    public List<Customer> selectCustomers(CustomerFilter filter, CustomerSort sort) {
+        Sort order = Sort.by(sort.descending() ? Sort.Direction.DESC : Sort.Direction.ASC, sort.field().column());
+        if(sort.field() != CustomerSort.Field.ID) {
+            order = order.and(Sort.by("id"));
+        }
+        return customerRepository.findAll(specificationOf(filter), order);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Customer> searchCustomers(String term, int limit) {
+        customerRepository.setLocalStatementTimeout(Long.toString(searchTimeout.toMillis()));
+        return customerRepository.search(
+                "%" + CustomerFilterQuery.escapeLike(term) + "%", term, limit);
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer afterId, int limit) {
+        return customerRepository.findByIdGreaterThan(afterId, PageRequest.of(0, limit, Sort.by("id")));
+    }
+
+    @Override
+    public List<CustomerEmail> selectCustomerEmailsAfterId(Integer afterId, int limit) {
+        return customerRepository.findEmailsByIdGreaterThan(afterId, PageRequest.of(0, limit, Sort.by("id")));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllCustomers(Consumer<Customer> action) {
+        try (Stream<Customer> customers = customerRepository.streamAll()) {
+            customers.forEach(action);
+        }
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
         return customerRepository.findById(id);
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
-        customerRepository.save(customer);
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        return customerRepository.findAllById(ids);
+    }
+
+    @Override
+    @Transactional
+    public boolean insertCustomer(Customer customer) {
+        Optional<Integer> id = customerRepository.insertIfEmailAbsent(
+                customer.getName(),
+                customer.getEmail(),
+                customer.getAge()
+        );
+        id.ifPresent(customer::setId);
+        return id.isPresent();
+    }
+
+    // ON CONFLICT DO NOTHING like the JDBC DAO, so an email taken concurrently comes back as 0
+    // instead of failing the whole batch; the emails of a batch are distinct
+    @Override
+    @Transactional
+    public int[] insertCustomers(List<Customer> customers) {
+        Set<String> insertedEmails = customerRepository.insertIfEmailsAbsent(
+                customers.stream().map(Customer::getName).toArray(String[]::new),
+                customers.stream().map(Customer::getEmail).toArray(String[]::new),
+                customers.stream().map(Customer::getAge).toArray(Integer[]::new)
+        );
+        int[] inserted = new int[customers.size()];
+        for (int i = 0; i < customers.size(); i++) {
+            inserted[i] = insertedEmails.contains(customers.get(i).getEmail()) ? 1 : 0;
+        }
+        return inserted;
     }
 
     @Override
@@ -34,18 +116,55 @@ public class CustomerJPADataAccessService implements CustomerDao{
         return customerRepository.existsCustomerByEmail(email);
     }
 
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return customerRepository.findEmailsIn(emails);
+    }
+
     @Override
     public boolean existPersonWithId(Integer id) {
         return customerRepository.existsCustomerById(id);
     }
 
     @Override
-    public void deleteCustomerById(Integer customerId) {
-        customerRepository.deleteById(customerId);
+    @Transactional
+    public boolean deleteCustomerById(Integer customerId) {
+        return customerRepository.deleteCustomerById(customerId) > 0;
+    }
+
+    // the same predicates as CustomerFilterQuery, so the V4 indexes apply
+    private static Specification<Customer> specificationOf(CustomerFilter filter) {
+        return (root, query, criteriaBuilder) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if(filter.minAge() != null) {
+                predicates.add(criteriaBuilder.greaterThanOrEqualTo(root.get("age"), filter.minAge()));
+            }
+            if(filter.maxAge() != null) {
+                predicates.add(criteriaBuilder.lessThanOrEqualTo(root.get("age"), filter.maxAge()));
+            }
+            if(filter.namePrefix() != null) {
+                predicates.add(criteriaBuilder.like(
+                        root.get("name"), CustomerFilterQuery.escapeLike(filter.namePrefix()) + "%", '\\'));
+            }
+            if(filter.emailDomain() != null) {
+                Expression<String> email = root.get("email");
+                Expression<String> domain = criteriaBuilder.substring(
+                        email, criteriaBuilder.sum(criteriaBuilder.locate(email, "@"), 1));
+                predicates.add(criteriaBuilder.equal(domain, filter.emailDomain()));
+            }
+            return criteriaBuilder.and(predicates.toArray(Predicate[]::new));
+        };
     }
 
     @Override
-    public void updateCustomer(Customer update) {
-        customerRepository.save(update);
+    @Transactional
+    public boolean updateCustomer(Customer update) {
+        return customerRepository.updateCustomer(
+                update.getId(),
+                update.getName(),
+                update.getEmail(),
+                update.getAge(),
+                update.getVersion()
+        ) > 0;
     }
 }
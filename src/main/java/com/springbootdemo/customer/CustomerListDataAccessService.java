@@ -1,64 +1,302 @@
 package com.springbootdemo.customer;
 
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Repository;
 
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository("list")
+@Profile("!reactive")
 public class CustomerListDataAccessService implements CustomerDao{
 
     //db
-    private static List<Customer> customers;
+    // stored customers are never mutated, callers only ever get copies
+    private final ConcurrentMap<Integer, Customer> customersById = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> customerIdsByEmail = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Integer> orderedIds = new ConcurrentSkipListSet<>();
+    private final AtomicInteger idSequence = new AtomicInteger();
+    // may briefly hold stale ids, which the filter re-check drops, but never miss a stored customer
+    private final ConcurrentSkipListMap<Integer, Set<Integer>> idsByAge = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Set<Integer>> idsByName = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, Set<Integer>> idsByEmailDomain = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<Integer>> idsBySearchTrigram = new ConcurrentHashMap<>();
 
-    static {
-        customers = new ArrayList<>();
-        Customer a = new Customer(1, "a", "a@123.com", 20);
-        customers.add(a);
-        Customer j = new Customer(2, "j", "j@123.com", 21);
-        customers.add(j);
+    public CustomerListDataAccessService() {
+        insertCustomer(new Customer("a", "a@123.com", 20));
+        insertCustomer(new Customer("j", "j@123.com", 21));
     }
 
     @Override
     public List<Customer> selectAllCustomers() {
-        return customers;
+        return customersInIdOrder(orderedIds)
+                .map(Customer::copyOf)
+                .toList();
+    }
+
+    @Override
+    public List<Customer> selectCustomers(CustomerFilter filter, CustomerSort sort) {
+        return candidateIds(filter)
+                .map(customersById::get)
+                .filter(Objects::nonNull)
+                .filter(filter::matches)
+                .sorted(sort.comparator())
+                .map(Customer::copyOf)
+                .toList();
+    }
+
+    // the narrowest index the filter allows: an email domain, then a name prefix, then the age range
+    private Stream<Integer> candidateIds(CustomerFilter filter) {
+        if(filter.emailDomain() != null) {
+            return idsByEmailDomain.getOrDefault(filter.emailDomain(), Set.of()).stream();
+        }
+        if(filter.namePrefix() != null) {
+            String prefix = filter.namePrefix();
+            return idsByName.tailMap(prefix).entrySet().stream()
+                    .takeWhile(entry -> entry.getKey().startsWith(prefix))
+                    .flatMap(entry -> entry.getValue().stream());
+        }
+        if(filter.minAge() != null || filter.maxAge() != null) {
+            int minAge = filter.minAge() != null ? filter.minAge() : Integer.MIN_VALUE;
+            int maxAge = filter.maxAge() != null ? filter.maxAge() : Integer.MAX_VALUE;
+            if(minAge > maxAge) {
+                return Stream.empty();
+            }
+            return idsByAge.subMap(minAge, true, maxAge, true).values().stream()
+                    .flatMap(Set::stream);
+        }
+        return orderedIds.stream();
+    }
+
+    // a text containing the term contains each of its trigrams, so the rarest one bounds the candidates
+    @Override
+    public List<Customer> searchCustomers(String term, int limit) {
+        Stream<Integer> candidateIds = term.length() < CustomerSearchText.TRIGRAM_LENGTH
+                ? orderedIds.stream()
+                : CustomerSearchText.trigrams(term).stream()
+                        .map(trigram -> idsBySearchTrigram.getOrDefault(trigram, Set.of()))
+                        .min(Comparator.comparingInt(Set::size))
+                        .orElseThrow()
+                        .stream();
+        return candidateIds
+                .map(customersById::get)
+                .filter(Objects::nonNull)
+                .filter(customer -> CustomerSearchText.of(customer).contains(term))
+                .sorted(CustomerSearchText.ranking(term))
+                .limit(limit)
+                .map(Customer::copyOf)
+                .toList();
+    }
+
+    @Override
+    public List<Customer> selectCustomersAfterId(Integer afterId, int limit) {
+        return customersInIdOrder(orderedIds.tailSet(afterId, false))
+                .limit(limit)
+                .map(Customer::copyOf)
+                .toList();
+    }
+
+    @Override
+    public List<CustomerEmail> selectCustomerEmailsAfterId(Integer afterId, int limit) {
+        return customersInIdOrder(orderedIds.tailSet(afterId, false))
+                .limit(limit)
+                .map(customer -> new CustomerEmail(customer.getId(), customer.getEmail()))
+                .toList();
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> action) {
+        customersInIdOrder(orderedIds)
+                .map(Customer::copyOf)
+                .forEach(action);
     }
 
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
-        return customers.stream()
-                .filter(c -> c.getId().equals(id))
-                .findFirst();
+        return Optional.ofNullable(customersById.get(id)).map(Customer::copyOf);
     }
 
     @Override
-    public void insertCustomer(Customer customer) {
-        customers.add(customer);
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        return ids.stream()
+                .map(customersById::get)
+                .filter(Objects::nonNull)
+                .map(Customer::copyOf)
+                .toList();
+    }
+
+    @Override
+    public boolean insertCustomer(Customer customer) {
+        // claiming the email first makes it the unique constraint; only the claim takes an id
+        AtomicInteger claimed = new AtomicInteger();
+        customerIdsByEmail.computeIfAbsent(customer.getEmail(), email -> {
+            claimed.set(idSequence.incrementAndGet());
+            return claimed.get();
+        });
+        if(claimed.get() == 0) {
+            return false;
+        }
+        int id = claimed.get();
+        Customer stored = new Customer(id, customer.getName(), customer.getEmail(), customer.getAge(), 0);
+        customersById.put(id, stored);
+        index(stored);
+        orderedIds.add(id);
+        customer.setId(id);
+        return true;
+    }
+
+    @Override
+    public int[] insertCustomers(List<Customer> customers) {
+        int[] inserted = new int[customers.size()];
+        for (int i = 0; i < customers.size(); i++) {
+            if(insertCustomer(customers.get(i))) {
+                inserted[i] = 1;
+            }
+        }
+        return inserted;
     }
 
     @Override
     public boolean existPersonWithEmail(String email) {
-        return customers.stream()
-                .anyMatch(c -> c.getEmail().equals(email));
+        return customerIdsByEmail.containsKey(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return emails.stream()
+                .filter(customerIdsByEmail::containsKey)
+                .collect(Collectors.toSet());
     }
 
     @Override
     public boolean existPersonWithId(Integer id) {
-        return customers.stream()
-                .anyMatch(c -> c.getId().equals(id));
+        return customersById.containsKey(id);
     }
 
     @Override
-    public void deleteCustomerById(Integer customerId) {
-         customers.stream()
-                 .filter(c -> c.getId().equals(customerId))
-                 .findFirst()
-                 .ifPresent(customers::remove);
+    public boolean deleteCustomerById(Integer customerId) {
+        Customer removed = customersById.remove(customerId);
+        if(removed == null) {
+            return false;
+        }
+        orderedIds.remove(customerId);
+        customerIdsByEmail.remove(removed.getEmail(), customerId);
+        unindex(removed);
+        return true;
     }
 
     @Override
-    public void updateCustomer(Customer update) {
-        customers.add(update);
+    public boolean updateCustomer(Customer update) {
+        AtomicBoolean updated = new AtomicBoolean();
+        // compute keeps concurrent updates and deletes of the same customer in order
+        customersById.computeIfPresent(update.getId(), (id, current) -> {
+            if(update.getVersion() != null && !update.getVersion().equals(current.getVersion())) {
+                return current;
+            }
+            String email = update.getEmail() != null ? update.getEmail() : current.getEmail();
+            if(!email.equals(current.getEmail())) {
+                Integer owner = customerIdsByEmail.putIfAbsent(email, id);
+                if(owner != null && !owner.equals(id)) {
+                    throw new DataIntegrityViolationException("email already taken");
+                }
+                customerIdsByEmail.remove(current.getEmail(), id);
+            }
+            updated.set(true);
+            Customer updatedCustomer = new Customer(
+                    id,
+                    update.getName() != null ? update.getName() : current.getName(),
+                    email,
+                    update.getAge() != null ? update.getAge() : current.getAge(),
+                    current.getVersion() + 1
+            );
+            reindex(current, updatedCustomer);
+            return updatedCustomer;
+        });
+        return updated.get();
+    }
+
+    private void index(Customer customer) {
+        addTo(idsByAge, customer.getAge(), customer.getId());
+        addTo(idsByName, customer.getName(), customer.getId());
+        addTo(idsByEmailDomain, CustomerFilter.emailDomainOf(customer.getEmail()), customer.getId());
+        for (String trigram : CustomerSearchText.trigrams(CustomerSearchText.of(customer))) {
+            addTo(idsBySearchTrigram, trigram, customer.getId());
+        }
+    }
+
+    private void unindex(Customer customer) {
+        removeFrom(idsByAge, customer.getAge(), customer.getId());
+        removeFrom(idsByName, customer.getName(), customer.getId());
+        removeFrom(idsByEmailDomain, CustomerFilter.emailDomainOf(customer.getEmail()), customer.getId());
+        for (String trigram : CustomerSearchText.trigrams(CustomerSearchText.of(customer))) {
+            removeFrom(idsBySearchTrigram, trigram, customer.getId());
+        }
+    }
+
+    private void reindex(Customer current, Customer updated) {
+        move(idsByAge, current.getAge(), updated.getAge(), updated.getId());
+        move(idsByName, current.getName(), updated.getName(), updated.getId());
+        move(idsByEmailDomain,
+                CustomerFilter.emailDomainOf(current.getEmail()),
+                CustomerFilter.emailDomainOf(updated.getEmail()),
+                updated.getId());
+
+        Set<String> currentTrigrams = CustomerSearchText.trigrams(CustomerSearchText.of(current));
+        Set<String> updatedTrigrams = CustomerSearchText.trigrams(CustomerSearchText.of(updated));
+        for (String trigram : updatedTrigrams) {
+            if(!currentTrigrams.contains(trigram)) {
+                addTo(idsBySearchTrigram, trigram, updated.getId());
+            }
+        }
+        for (String trigram : currentTrigrams) {
+            if(!updatedTrigrams.contains(trigram)) {
+                removeFrom(idsBySearchTrigram, trigram, updated.getId());
+            }
+        }
+    }
+
+    // added before removed, so a concurrent selectCustomers finds the customer under one of the two
+    private static <K> void move(ConcurrentMap<K, Set<Integer>> index, K from, K to, Integer id) {
+        if(from.equals(to)) {
+            return;
+        }
+        addTo(index, to, id);
+        removeFrom(index, from, id);
+    }
+
+    private static <K> void addTo(ConcurrentMap<K, Set<Integer>> index, K key, Integer id) {
+        index.compute(key, (k, ids) -> {
+            Set<Integer> updatedIds = ids != null ? ids : ConcurrentHashMap.newKeySet();
+            updatedIds.add(id);
+            return updatedIds;
+        });
+    }
+
+    // an emptied entry is dropped under the same lock, so addTo never adds to a detached set
+    private static <K> void removeFrom(ConcurrentMap<K, Set<Integer>> index, K key, Integer id) {
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private Stream<Customer> customersInIdOrder(Set<Integer> ids) {
+        return ids.stream()
+                .map(customersById::get)
+                .filter(Objects::nonNull);
     }
 }
@@ -0,0 +1,107 @@
+package com.springbootdemo.customer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// only successful calls get a percentile histogram
+@Component
+public class CustomerMetricsPostProcessor implements BeanPostProcessor {
+
+    static final String DAO_METRIC = "customer.dao";
+    static final String SERVICE_METRIC = "customer.service";
+
+    private static final String APPLICATION_EXCEPTIONS = "com.springbootdemo.exception";
+
+    // looked up on first use, a post processor must not pull beans in while they're being created
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private volatile MeterRegistry registry;
+
+    public CustomerMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if(bean instanceof CustomerDao) {
+            return timed(bean, CustomerDao.class, DAO_METRIC, Tags.of("dao", beanName), false);
+        }
+        if(bean instanceof CustomerService) {
+            return timed(bean, CustomerService.class, SERVICE_METRIC, Tags.empty(), true);
+        }
+        return bean;
+    }
+
+    private record TimerKey(Method method, String exception) {
+    }
+
+    private MeterRegistry registry() {
+        MeterRegistry current = registry;
+        if(current == null) {
+            current = meterRegistry.getObject();
+            registry = current;
+        }
+        return current;
+    }
+
+    private Object timed(Object bean, Class<?> timedType, String metric, Tags tags, boolean proxyTargetClass) {
+        Map<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+        ProxyFactory proxyFactory = new ProxyFactory();
+        proxyFactory.setTarget(bean);
+        // the interfaces of the bean's own class, not those of a transactional proxy around it
+        proxyFactory.setInterfaces(ClassUtils.getAllInterfacesForClass(AopUtils.getTargetClass(bean)));
+        proxyFactory.setProxyTargetClass(proxyTargetClass);
+        proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+            if(invocation.getMethod().getDeclaringClass() != timedType) {
+                return invocation.proceed();
+            }
+            MeterRegistry registry = registry();
+            Timer.Sample sample = Timer.start(registry);
+            String exception = "none";
+            try {
+                return invocation.proceed();
+            } catch (Throwable e) {
+                exception = exceptionTag(e);
+                throw e;
+            } finally {
+                TimerKey key = new TimerKey(invocation.getMethod(), exception);
+                sample.stop(timers.computeIfAbsent(key, k -> timer(registry, metric, tags, k)));
+            }
+        });
+        return proxyFactory.getProxy();
+    }
+
+    private static Timer timer(MeterRegistry registry, String metric, Tags tags, TimerKey key) {
+        boolean success = key.exception().equals("none");
+        return Timer.builder(metric)
+                .tags(tags)
+                .tag("method", key.method().getName())
+                .tag("outcome", success ? "success" : "error")
+                .tag("exception", key.exception())
+                .publishPercentileHistogram(success)
+                .register(registry);
+    }
+
+    // the application's own exceptions by name, anything else by kind, so the tag can't grow unbounded
+    private static String exceptionTag(Throwable e) {
+        if(e.getClass().getPackageName().equals(APPLICATION_EXCEPTIONS)) {
+            return e.getClass().getSimpleName();
+        }
+        if(e instanceof DataAccessException) {
+            return "DataAccessException";
+        }
+        return e instanceof RuntimeException ? "RuntimeException" : "Throwable";
+    }
+}
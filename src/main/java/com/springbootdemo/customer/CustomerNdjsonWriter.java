@@ -0,0 +1,35 @@
+package com.springbootdemo.customer;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+class CustomerNdjsonWriter implements Consumer<Customer> {
+
+    private final ObjectWriter objectWriter;
+    private final OutputStream outputStream;
+    private boolean flushed;
+
+    CustomerNdjsonWriter(ObjectWriter objectWriter, OutputStream outputStream) {
+        this.objectWriter = objectWriter;
+        this.outputStream = outputStream;
+    }
+
+    @Override
+    public void accept(Customer customer) {
+        try {
+            outputStream.write(objectWriter.writeValueAsBytes(customer));
+            outputStream.write('\n');
+            if(!flushed) {
+                // get the first row to the client straight away, the rest goes out as the buffer fills
+                outputStream.flush();
+                flushed = true;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.springbootdemo.customer;
+
+// told by CustomerCacheInvalidationListener about the writes of other instances
+public interface CustomerNearCache {
+
+    void evict(Integer id);
+
+    void evictAll();
+
+    // evicts everything as well; while disabled every read goes to the database
+    void setEnabled(boolean enabled);
+}
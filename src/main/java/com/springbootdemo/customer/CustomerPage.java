@@ -0,0 +1,10 @@
+package com.springbootdemo.customer;
+
+import java.util.List;
+
+public record CustomerPage(
+        List<Customer> customers,
+        Integer nextCursor
+) {
+    static final String DEFAULT_LIMIT = "100";
+}
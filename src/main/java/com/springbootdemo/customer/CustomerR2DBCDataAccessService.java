@@ -0,0 +1,270 @@
+package com.springbootdemo.customer;
+
+import io.r2dbc.spi.Readable;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Repository("r2dbc")
+@Profile("reactive")
+public class CustomerR2DBCDataAccessService implements ReactiveCustomerDao {
+
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    private final DatabaseClient databaseClient;
+    private final Duration searchTimeout;
+
+    public CustomerR2DBCDataAccessService(DatabaseClient databaseClient,
+                                          @Value("${customer.search.timeout}") Duration searchTimeout) {
+        this.databaseClient = databaseClient;
+        this.searchTimeout = searchTimeout;
+    }
+
+    // rows are pulled from a portal STREAM_FETCH_SIZE at a time, as the subscriber asks for them
+    @Override
+    public Flux<Customer> selectAllCustomers() {
+        var sql = """
+                SELECT id, name, email, age, version FROM customer
+                """;
+        return databaseClient.sql(sql)
+                .filter(statement -> statement.fetchSize(STREAM_FETCH_SIZE))
+                .map(CustomerR2DBCDataAccessService::mapCustomer)
+                .all();
+    }
+
+    @Override
+    public Flux<Customer> selectCustomers(CustomerFilter filter, CustomerSort sort) {
+        CustomerFilterQuery query = CustomerFilterQuery.of(filter, sort, position -> "$" + position);
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(query.sql());
+        for (int i = 0; i < query.args().size(); i++) {
+            spec = spec.bind(i, query.args().get(i));
+        }
+        return spec.map(CustomerR2DBCDataAccessService::mapCustomer).all();
+    }
+
+    // a transaction of its own for the local statement_timeout
+    @Override
+    public Flux<Customer> searchCustomers(String term, int limit) {
+        var sql = """
+                SELECT id, name, email, age, version FROM customer
+                WHERE lower(name || ' ' || email) LIKE $1
+                ORDER BY $2 <<-> lower(name || ' ' || email)
+                LIMIT $3
+                """;
+        return databaseClient.inConnectionMany(connection -> Flux.usingWhen(
+                Mono.from(connection.beginTransaction()).thenReturn(connection),
+                transaction -> Flux.from(transaction
+                                .createStatement("SELECT set_config('statement_timeout', $1, true)")
+                                .bind(0, Long.toString(searchTimeout.toMillis()))
+                                .execute())
+                        .concatMap(result -> result.map(row -> row.get(0, String.class)))
+                        .thenMany(transaction.createStatement(sql)
+                                .bind(0, "%" + CustomerFilterQuery.escapeLike(term) + "%")
+                                .bind(1, term)
+                                .bind(2, limit)
+                                .execute())
+                        .concatMap(result -> result.map(CustomerR2DBCDataAccessService::mapCustomer)),
+                transaction -> transaction.commitTransaction(),
+                (transaction, e) -> transaction.rollbackTransaction(),
+                transaction -> transaction.rollbackTransaction()));
+    }
+
+    @Override
+    public Flux<Customer> selectCustomersAfterId(Integer afterId, int limit) {
+        var sql = """
+                SELECT id, name, email, age, version FROM customer WHERE id > :afterId ORDER BY id LIMIT :limit
+                """;
+        return databaseClient.sql(sql)
+                .bind("afterId", afterId)
+                .bind("limit", limit)
+                .map(CustomerR2DBCDataAccessService::mapCustomer)
+                .all();
+    }
+
+    @Override
+    public Flux<CustomerEmail> selectCustomerEmailsAfterId(Integer afterId, int limit) {
+        var sql = """
+                SELECT id, email FROM customer WHERE id > :afterId ORDER BY id LIMIT :limit
+                """;
+        return databaseClient.sql(sql)
+                .bind("afterId", afterId)
+                .bind("limit", limit)
+                .map(row -> new CustomerEmail(row.get(0, Integer.class), row.get(1, String.class)))
+                .all();
+    }
+
+    @Override
+    public Mono<Customer> selectCustomerById(Integer id) {
+        var sql = """
+                SELECT id, name, email, age, version FROM customer WHERE id = :id
+                """;
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .map(CustomerR2DBCDataAccessService::mapCustomer)
+                .one();
+    }
+
+    @Override
+    public Flux<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        var sql = """
+                SELECT id, name, email, age, version FROM customer WHERE id = ANY(:ids)
+                """;
+        return databaseClient.sql(sql)
+                .bind("ids", ids.toArray(Integer[]::new))
+                .map(CustomerR2DBCDataAccessService::mapCustomer)
+                .all();
+    }
+
+    // the unique email constraint decides in the same statement, no row comes back when the email is taken
+    @Override
+    public Mono<Boolean> insertCustomer(Customer customer) {
+        var sql = """
+                INSERT INTO customer (name, email, age)
+                VALUES (:name, :email, :age)
+                ON CONFLICT (email) DO NOTHING
+                RETURNING id
+                """;
+        return databaseClient.sql(sql)
+                .bind("name", customer.getName())
+                .bind("email", customer.getEmail())
+                .bind("age", customer.getAge())
+                .map(row -> row.get("id", Integer.class))
+                .one()
+                .doOnNext(customer::setId)
+                .hasElement();
+    }
+
+    // one statement with a binding per customer; a row whose email is already taken reports 0
+    @Override
+    public Mono<int[]> insertCustomers(List<Customer> customers) {
+        var sql = """
+                INSERT INTO customer (name, email, age)
+                VALUES ($1, $2, $3)
+                ON CONFLICT (email) DO NOTHING
+                """;
+        return databaseClient.inConnectionMany(connection -> {
+                    Statement statement = connection.createStatement(sql);
+                    for (int i = 0; i < customers.size(); i++) {
+                        if(i > 0) {
+                            statement.add();
+                        }
+                        Customer customer = customers.get(i);
+                        statement.bind(0, customer.getName())
+                                .bind(1, customer.getEmail())
+                                .bind(2, customer.getAge());
+                    }
+                    return Flux.from(statement.execute())
+                            .concatMap(Result::getRowsUpdated);
+                })
+                .collectList()
+                .map(counts -> counts.stream().mapToInt(Long::intValue).toArray());
+    }
+
+    @Override
+    public Mono<Boolean> existPersonWithEmail(String email) {
+        var sql = """
+                SELECT count(id) FROM customer WHERE email = :email
+                """;
+        return databaseClient.sql(sql)
+                .bind("email", email)
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .map(count -> count > 0);
+    }
+
+    @Override
+    public Mono<Set<String>> selectExistingEmails(Collection<String> emails) {
+        var sql = """
+                SELECT email FROM customer WHERE email = ANY(:emails)
+                """;
+        return databaseClient.sql(sql)
+                .bind("emails", emails.toArray(String[]::new))
+                .map(row -> row.get("email", String.class))
+                .all()
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public Mono<Boolean> existPersonWithId(Integer id) {
+        var sql = """
+                SELECT count(id) FROM customer WHERE id = :id
+                """;
+        return databaseClient.sql(sql)
+                .bind("id", id)
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .map(count -> count > 0);
+    }
+
+    @Override
+    public Mono<Boolean> deleteCustomerById(Integer customerId) {
+        var sql = """
+                DELETE FROM customer WHERE id = :id
+                """;
+        return databaseClient.sql(sql)
+                .bind("id", customerId)
+                .fetch()
+                .rowsUpdated()
+                .map(result -> result > 0);
+    }
+
+    @Override
+    public Mono<Boolean> updateCustomer(Customer update) {
+        // only the non null (changed) columns go into the statement, all in one round trip
+        Map<String, Object> columns = new LinkedHashMap<>();
+        if(update.getName() != null) {
+            columns.put("name", update.getName());
+        }
+        if(update.getAge() != null) {
+            columns.put("age", update.getAge());
+        }
+        if(update.getEmail() != null) {
+            columns.put("email", update.getEmail());
+        }
+        if(columns.isEmpty()) {
+            return Mono.just(false);
+        }
+        String assignments = columns.keySet().stream()
+                .map(column -> column + " = :" + column)
+                .collect(Collectors.joining(", "));
+        String sql = "UPDATE customer SET " + assignments + ", version = version + 1 WHERE id = :id";
+        // a version makes it conditional, no row matches once someone else has updated the customer
+        if(update.getVersion() != null) {
+            sql += " AND version = :version";
+        }
+        DatabaseClient.GenericExecuteSpec spec = databaseClient
+                .sql(sql)
+                .bind("id", update.getId());
+        if(update.getVersion() != null) {
+            spec = spec.bind("version", update.getVersion());
+        }
+        for (Map.Entry<String, Object> column : columns.entrySet()) {
+            spec = spec.bind(column.getKey(), column.getValue());
+        }
+        return spec.fetch().rowsUpdated().map(result -> result > 0);
+    }
+
+    // reads by position, so queries must select "id, name, email, age, version" in that order
+    private static Customer mapCustomer(Readable row) {
+        return new Customer(
+                row.get(0, Integer.class),
+                row.get(1, String.class),
+                row.get(2, String.class),
+                row.get(3, Integer.class),
+                row.get(4, Integer.class)
+        );
+    }
+}
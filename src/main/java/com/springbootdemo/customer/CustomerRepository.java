@@ -1,9 +1,92 @@
 package com.springbootdemo.customer;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface CustomerRepository extends JpaRepository<Customer, Integer> {
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public interface CustomerRepository extends JpaRepository<Customer, Integer>, JpaSpecificationExecutor<Customer> {
 
     boolean existsCustomerByEmail(String email);
     boolean existsCustomerById(Integer id);
+
+    @Query(value = """
+            INSERT INTO customer (name, email, age)
+            VALUES (:name, :email, :age)
+            ON CONFLICT (email) DO NOTHING
+            RETURNING id
+            """, nativeQuery = true)
+    Optional<Integer> insertIfEmailAbsent(@Param("name") String name,
+                                          @Param("email") String email,
+                                          @Param("age") Integer age);
+
+    // one statement for the whole list; an email that is taken by the time it runs is left out
+    @Query(value = """
+            INSERT INTO customer (name, email, age)
+            SELECT * FROM unnest(CAST(:names AS text[]), CAST(:emails AS text[]), CAST(:ages AS int[]))
+            ON CONFLICT (email) DO NOTHING
+            RETURNING email
+            """, nativeQuery = true)
+    Set<String> insertIfEmailsAbsent(@Param("names") String[] names,
+                                     @Param("emails") String[] emails,
+                                     @Param("ages") Integer[] ages);
+
+    @Modifying
+    @Query("DELETE FROM Customer c WHERE c.id = :id")
+    int deleteCustomerById(@Param("id") Integer id);
+
+    @Query("SELECT c.email FROM Customer c WHERE c.email IN :emails")
+    Set<String> findEmailsIn(@Param("emails") Collection<String> emails);
+    List<Customer> findByIdGreaterThan(Integer id, Pageable pageable);
+
+    @Query("SELECT new com.springbootdemo.customer.CustomerEmail(c.id, c.email) FROM Customer c WHERE c.id > :id")
+    List<CustomerEmail> findEmailsByIdGreaterThan(@Param("id") Integer id, Pageable pageable);
+
+    // the same SQL as CustomerJDBCDataAccessService.searchCustomers
+    @Query(value = """
+            SELECT id, name, email, age, version FROM customer
+            WHERE lower(name || ' ' || email) LIKE :pattern
+            ORDER BY :term <<-> lower(name || ' ' || email)
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Customer> search(@Param("pattern") String pattern,
+                          @Param("term") String term,
+                          @Param("limit") int limit);
+
+    // SET LOCAL, for the rest of the current transaction
+    @Query(value = "SELECT set_config('statement_timeout', :timeout, true)", nativeQuery = true)
+    String setLocalStatementTimeout(@Param("timeout") String timeout);
+
+    // constructor expression: rows come back unmanaged, so the persistence context doesn't grow while streaming
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.springbootdemo.customer.Customer(c.id, c.name, c.email, c.age, c.version) FROM Customer c")
+    Stream<Customer> streamAll();
+
+    // null leaves the column as it is, a null version updates whatever version is current
+    @Modifying
+    @Query("""
+            UPDATE Customer c
+            SET c.name = COALESCE(:name, c.name),
+                c.email = COALESCE(:email, c.email),
+                c.age = COALESCE(:age, c.age),
+                c.version = c.version + 1
+            WHERE c.id = :id
+            AND (:version IS NULL OR c.version = :version)
+            """)
+    int updateCustomer(@Param("id") Integer id,
+                       @Param("name") String name,
+                       @Param("email") String email,
+                       @Param("age") Integer age,
+                       @Param("version") Integer version);
 }
@@ -0,0 +1,158 @@
+package com.springbootdemo.customer;
+
+import io.r2dbc.spi.R2dbcException;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// the search SQL in memory: contains the term, ranked by term <<-> text as pg_trgm computes it
+final class CustomerSearchText {
+
+    static final int TRIGRAM_LENGTH = 3;
+    private static final String QUERY_CANCELED = "57014";
+
+    private CustomerSearchText() {
+    }
+
+    static String of(Customer customer) {
+        return (customer.getName() + " " + customer.getEmail()).toLowerCase(Locale.ROOT);
+    }
+
+    static Set<String> trigrams(String text) {
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + TRIGRAM_LENGTH <= text.length(); i++) {
+            trigrams.add(text.substring(i, i + TRIGRAM_LENGTH));
+        }
+        return trigrams;
+    }
+
+    static boolean timedOut(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if(cause instanceof SQLException sqlException && QUERY_CANCELED.equals(sqlException.getSQLState())) {
+                return true;
+            }
+            if(cause instanceof R2dbcException r2dbcException && QUERY_CANCELED.equals(r2dbcException.getSqlState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ties, which the SQL leaves in index order, go by id
+    static Comparator<Customer> ranking(String term) {
+        return Comparator.<Customer>comparingDouble(customer -> distance(term, of(customer)))
+                .thenComparing(Customer::getId);
+    }
+
+    // 1 - word_similarity(term, text), a port of pg_trgm's iterate_word_similarity
+    static float distance(String term, String text) {
+        Set<String> termTrigrams = new HashSet<>();
+        for (String word : words(term)) {
+            termTrigrams.addAll(paddedTrigrams(word));
+        }
+        List<String> textTrigrams = new ArrayList<>();
+        for (String word : words(text)) {
+            textTrigrams.addAll(paddedTrigrams(word));
+        }
+
+        Map<String, Integer> indexes = new HashMap<>();
+        int[] trigramIndexes = new int[textTrigrams.size()];
+        for (int i = 0; i < trigramIndexes.length; i++) {
+            trigramIndexes[i] = indexes.computeIfAbsent(textTrigrams.get(i), trigram -> indexes.size());
+        }
+        boolean[] found = new boolean[indexes.size()];
+        indexes.forEach((trigram, index) -> found[index] = termTrigrams.contains(trigram));
+
+        int termCount = termTrigrams.size();
+        int[] lastPosition = new int[indexes.size()];
+        Arrays.fill(lastPosition, -1);
+        int textCount = 0;
+        int common = 0;
+        int lower = -1;
+        float best = 0;
+        for (int upper = 0; upper < trigramIndexes.length; upper++) {
+            int index = trigramIndexes[upper];
+            if(lower >= 0 || found[index]) {
+                if(lastPosition[index] < 0) {
+                    textCount++;
+                    if(found[index]) {
+                        common++;
+                    }
+                }
+                lastPosition[index] = upper;
+            }
+            if(!found[index]) {
+                continue;
+            }
+            if(lower < 0) {
+                lower = upper;
+                textCount = 1;
+            }
+            float current = similarity(common, termCount, textCount);
+            // a later lower bound may leave out more unshared trigrams than shared ones
+            int previousLower = lower;
+            int tryCount = textCount;
+            int tryCommon = common;
+            for (int tryLower = lower; tryLower <= upper; tryLower++) {
+                float tried = similarity(tryCommon, termCount, tryCount);
+                if(tried > current) {
+                    current = tried;
+                    textCount = tryCount;
+                    common = tryCommon;
+                    lower = tryLower;
+                }
+                int tryIndex = trigramIndexes[tryLower];
+                if(lastPosition[tryIndex] == tryLower) {
+                    tryCount--;
+                    if(found[tryIndex]) {
+                        tryCommon--;
+                    }
+                }
+            }
+            best = Math.max(best, current);
+            for (int dropped = previousLower; dropped < lower; dropped++) {
+                int droppedIndex = trigramIndexes[dropped];
+                if(lastPosition[droppedIndex] == dropped) {
+                    lastPosition[droppedIndex] = -1;
+                }
+            }
+        }
+        return (float) (1.0 - best);
+    }
+
+    private static float similarity(int common, int termCount, int textCount) {
+        return (float) common / (float) (termCount + textCount - common);
+    }
+
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if(wordChar && start < 0) {
+                start = i;
+            } else if(!wordChar && start >= 0) {
+                words.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static List<String> paddedTrigrams(String word) {
+        String padded = "  " + word + " ";
+        List<String> trigrams = new ArrayList<>();
+        for (int i = 0; i + TRIGRAM_LENGTH <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + TRIGRAM_LENGTH));
+        }
+        return trigrams;
+    }
+}
@@ -1,19 +1,44 @@
 package com.springbootdemo.customer;
 
 import com.springbootdemo.exception.DuplicateResourceException;
+import com.springbootdemo.exception.PreconditionFailedException;
 import com.springbootdemo.exception.RequestValidationException;
 import com.springbootdemo.exception.ResourceNotFoundException;
+import com.springbootdemo.exception.ServiceUnavailableException;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
+@Profile("!reactive")
 public class CustomerService {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    static final int MAX_REGISTRATION_BATCH_SIZE = 50_000;
+    static final int REGISTRATION_CHUNK_SIZE = 1000;
+    private static final int MAX_SEARCH_LIMIT = 100;
+    private static final int MAX_IDS = 1000;
+    private static final List<String> NOT_WITH_IDS =
+            List.of("limit", "after", "sort", "minAge", "maxAge", "namePrefix", "emailDomain");
+
     private final CustomerDao customerDao;
 
-    public CustomerService(@Qualifier("jdbc") CustomerDao customerDao) {
+    public CustomerService(@Qualifier("cached") CustomerDao customerDao) {
         this.customerDao = customerDao;
     }
 
@@ -21,61 +46,311 @@ public class CustomerService {
         return customerDao.selectAllCustomers();
     }
 
+    public List<Customer> getCustomers(CustomerFilter filter, String sort) {
+        validate(filter);
+        CustomerSort customerSort = CustomerSort.parse(sort);
+        if(filter.isEmpty() && sort == null) {
+            return customerDao.selectAllCustomers();
+        }
+        return customerDao.selectCustomers(filter, customerSort);
+    }
+
+    static void validate(CustomerFilter filter) {
+        if(filter.minAge() != null && filter.maxAge() != null && filter.minAge() > filter.maxAge()) {
+            throw new RequestValidationException("minAge must not be greater than maxAge");
+        }
+    }
+
+    public List<Customer> searchCustomers(String query, int limit) {
+        String term = searchTerm(query, limit);
+        try {
+            return customerDao.searchCustomers(term, limit);
+        } catch (DataAccessException e) {
+            throw searchFailed(term, e);
+        }
+    }
+
+    // shorter terms have no trigram for the index to narrow down with
+    static String searchTerm(String query, int limit) {
+        if(limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            throw new RequestValidationException("limit must be between 1 and " + MAX_SEARCH_LIMIT);
+        }
+        String term = query == null ? "" : query.strip().toLowerCase(Locale.ROOT);
+        if(term.length() < CustomerSearchText.TRIGRAM_LENGTH) {
+            throw new RequestValidationException(
+                    "search needs at least " + CustomerSearchText.TRIGRAM_LENGTH + " characters");
+        }
+        return term;
+    }
+
+    // a term the index can't rule out quickly runs into customer.search.timeout
+    static RuntimeException searchFailed(String term, DataAccessException e) {
+        if(CustomerSearchText.timedOut(e)) {
+            return new ServiceUnavailableException("search for [" + term + "] took too long");
+        }
+        return e;
+    }
+
+    public CustomerPage getCustomersPage(Integer afterId, int limit) {
+        validatePageLimit(limit);
+        return page(customerDao.selectCustomersAfterId(afterId, limit + 1), limit, Customer::getId, CustomerPage::new);
+    }
+
+    public CustomerEmailPage getCustomerEmailsPage(Integer afterId, int limit) {
+        validatePageLimit(limit);
+        return page(customerDao.selectCustomerEmailsAfterId(afterId, limit + 1), limit, CustomerEmail::id, CustomerEmailPage::new);
+    }
+
+    static void validatePageLimit(int limit) {
+        if(limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new RequestValidationException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
+
+    // the extra row only tells that another page exists
+    static <T, P> P page(List<T> rows, int limit, Function<T, Integer> idOf, BiFunction<List<T>, Integer, P> pageOf) {
+        if(rows.size() <= limit) {
+            return pageOf.apply(rows, null);
+        }
+        List<T> page = rows.subList(0, limit);
+        return pageOf.apply(page, idOf.apply(page.get(limit - 1)));
+    }
+
+    public void streamAllCustomers(Consumer<Customer> action) {
+        customerDao.streamAllCustomers(action);
+    }
+
     public Customer getCustomer(Integer id) {
         return customerDao.selectCustomerById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("customer with id [" + id + "] not found"));
+                .orElseThrow(() -> notFound(id));
     }
 
-    public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest){
-        // check if email exist ? not add : add
-        String email = customerRegistrationRequest.email();
-        if(customerDao.existPersonWithEmail(email)) {
-            throw new DuplicateResourceException("email already taken");
+    static ResourceNotFoundException notFound(Integer id) {
+        return new ResourceNotFoundException("customer with id [" + id + "] not found");
+    }
+
+    public List<Customer> getCustomersByIds(List<Integer> ids) {
+        List<Integer> distinctIds = distinctIds(ids);
+        return inOrderOf(distinctIds, customerDao.selectCustomersByIds(distinctIds));
+    }
+
+    // a 400 rather than a page, filter or order that is silently ignored
+    static void validateIdsOnly(Collection<String> params) {
+        List<String> ignored = NOT_WITH_IDS.stream().filter(params::contains).toList();
+        if(!ignored.isEmpty()) {
+            throw new RequestValidationException("ids can't be combined with " + String.join(", ", ignored));
         }
-        // add
+    }
+
+    static List<Integer> distinctIds(List<Integer> ids) {
+        if(ids == null || ids.isEmpty()) {
+            throw new RequestValidationException("no customer ids given");
+        }
+        List<Integer> distinctIds = ids.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if(distinctIds.size() > MAX_IDS) {
+            throw new RequestValidationException("at most " + MAX_IDS + " customer ids per request");
+        }
+        return distinctIds;
+    }
+
+    static List<Customer> inOrderOf(List<Integer> ids, Collection<Customer> customers) {
+        Map<Integer, Customer> customersById = new HashMap<>();
+        customers.forEach(customer -> customersById.put(customer.getId(), customer));
+        return ids.stream()
+                .map(customersById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    public void addCustomer(CustomerRegistrationRequest customerRegistrationRequest){
         Customer customer = new Customer(
                 customerRegistrationRequest.name(),
                 customerRegistrationRequest.email(),
                 customerRegistrationRequest.age()
         );
-        customerDao.insertCustomer(customer);
+        // insert only if the email is free; the unique constraint decides, no separate existence check
+        if(!customerDao.insertCustomer(customer)) {
+            throw new DuplicateResourceException("email already taken");
+        }
+    }
+
+    public List<CustomerRegistrationResult> addCustomers(List<CustomerRegistrationRequest> requests) {
+        validate(requests);
+        List<CustomerRegistrationResult> results = new ArrayList<>(requests.size());
+        Set<String> batchEmails = new HashSet<>();
+        for (int from = 0; from < requests.size(); from += REGISTRATION_CHUNK_SIZE) {
+            int to = Math.min(from + REGISTRATION_CHUNK_SIZE, requests.size());
+            results.addAll(addCustomersChunk(requests.subList(from, to), from, batchEmails));
+        }
+        return results;
+    }
+
+    static void validate(List<CustomerRegistrationRequest> requests) {
+        if(requests == null || requests.isEmpty()) {
+            throw new RequestValidationException("no customers to register");
+        }
+        if(requests.size() > MAX_REGISTRATION_BATCH_SIZE) {
+            throw new RequestValidationException("at most " + MAX_REGISTRATION_BATCH_SIZE + " customers per batch");
+        }
+    }
+
+    private List<CustomerRegistrationResult> addCustomersChunk(List<CustomerRegistrationRequest> chunk,
+                                                               int offset,
+                                                               Set<String> batchEmails) {
+        List<String> emails = RegistrationChunk.emails(chunk);
+        Set<String> existingEmails = emails.isEmpty() ? Set.of() : customerDao.selectExistingEmails(emails);
+        RegistrationChunk registrations = new RegistrationChunk(chunk, offset, existingEmails, batchEmails);
+        if(registrations.customers().isEmpty()) {
+            return registrations.results(new int[0]);
+        }
+        return registrations.results(customerDao.insertCustomers(registrations.customers()));
+    }
+
+    static final class RegistrationChunk {
+
+        private final List<CustomerRegistrationRequest> chunk;
+        private final int offset;
+        private final CustomerRegistrationResult[] results;
+        private final List<Customer> customers = new ArrayList<>();
+        private final List<Integer> positions = new ArrayList<>();
+
+        RegistrationChunk(List<CustomerRegistrationRequest> chunk,
+                          int offset,
+                          Set<String> existingEmails,
+                          Set<String> batchEmails) {
+            this.chunk = chunk;
+            this.offset = offset;
+            this.results = new CustomerRegistrationResult[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                CustomerRegistrationRequest request = chunk.get(i);
+                if(!isValid(request)) {
+                    results[i] = new CustomerRegistrationResult(offset + i, request.email(), CustomerRegistrationResult.Status.INVALID);
+                }
+                else if(existingEmails.contains(request.email()) || !batchEmails.add(request.email())) {
+                    results[i] = new CustomerRegistrationResult(offset + i, request.email(), CustomerRegistrationResult.Status.DUPLICATE);
+                }
+                else {
+                    customers.add(new Customer(request.name(), request.email(), request.age()));
+                    positions.add(i);
+                }
+            }
+        }
+
+        static List<String> emails(List<CustomerRegistrationRequest> chunk) {
+            return chunk.stream()
+                    .filter(CustomerService::isValid)
+                    .map(CustomerRegistrationRequest::email)
+                    .toList();
+        }
+
+        List<Customer> customers() {
+            return customers;
+        }
+
+        // an email registered concurrently since the check is reported by the insert as 0 rows
+        List<CustomerRegistrationResult> results(int[] inserted) {
+            for (int j = 0; j < positions.size(); j++) {
+                int i = positions.get(j);
+                CustomerRegistrationResult.Status status = inserted[j] > 0
+                        ? CustomerRegistrationResult.Status.CREATED
+                        : CustomerRegistrationResult.Status.DUPLICATE;
+                results[i] = new CustomerRegistrationResult(offset + i, chunk.get(i).email(), status);
+            }
+            return List.of(results);
+        }
+    }
+
+    static boolean isValid(CustomerRegistrationRequest request) {
+        return request != null
+                && request.name() != null && !request.name().isBlank()
+                && request.email() != null && !request.email().isBlank()
+                && request.age() != null;
     }
 
     public void deleteCustomer(Integer customerId){
-        if(!(customerDao.existPersonWithId(customerId))) {
-            throw new ResourceNotFoundException("customer with id [" + customerId + "] not found");
+        if(!customerDao.deleteCustomerById(customerId)) {
+            throw notFound(customerId);
+        }
+    }
+
+    // no read first: one conditional update per listed version, at most one can match
+    public void updateCustomer(Integer customerId, CustomerUpdateRequest updateRequest, String ifMatch) {
+        Set<Integer> versions = CustomerETags.versions(ifMatch);
+        if(versions == null) {
+            updateCustomer(customerId, updateRequest);
+            return;
+        }
+        for (Integer version : versions) {
+            if(update(versionedUpdate(customerId, updateRequest, version))) {
+                return;
+            }
+        }
+        throw updateRejected(customerId, customerDao.existPersonWithId(customerId));
+    }
+
+    // the email check before an update can race another writer, the DAO's unique email decides
+    private boolean update(Customer update) {
+        try {
+            return customerDao.updateCustomer(update);
+        } catch (DataIntegrityViolationException e) {
+            throw new DuplicateResourceException("email already taken");
         }
-        customerDao.deleteCustomerById(customerId);
+    }
+
+    static Customer versionedUpdate(Integer customerId, CustomerUpdateRequest updateRequest, Integer expectedVersion) {
+        if(updateRequest.name() == null && updateRequest.email() == null && updateRequest.age() == null) {
+            throw new RequestValidationException("no data changes found");
+        }
+        return new Customer(
+                customerId,
+                updateRequest.name(),
+                updateRequest.email(),
+                updateRequest.age(),
+                expectedVersion
+        );
+    }
+
+    // a versioned update that changed no row: gone, or at another version by now
+    static RuntimeException updateRejected(Integer customerId, boolean exists) {
+        return exists
+                ? new PreconditionFailedException("customer has been modified")
+                : notFound(customerId);
     }
 
     public void updateCustomer(Integer customerId, CustomerUpdateRequest updateRequest) {
-        Customer customer = getCustomer(customerId);
+        Customer update = changes(getCustomer(customerId), updateRequest);
+        if(update.getEmail() != null && customerDao.existPersonWithEmail(update.getEmail())) {
+            throw new DuplicateResourceException("email already taken");
+        }
+        update(update);
+    }
 
+    static Customer changes(Customer customer, CustomerUpdateRequest updateRequest) {
+        Customer update = new Customer();
+        update.setId(customer.getId());
         boolean changes = false;
 
         if(updateRequest.name() != null && !updateRequest.name().equals(customer.getName())) {
-            customer.setName(updateRequest.name());
+            update.setName(updateRequest.name());
             changes = true;
         }
 
         if(updateRequest.age() != null && !updateRequest.age().equals(customer.getAge())) {
-            customer.setAge(updateRequest.age());
+            update.setAge(updateRequest.age());
             changes = true;
         }
 
         if(updateRequest.email() != null && !updateRequest.email().equals(customer.getEmail())) {
-            if(customerDao.existPersonWithEmail(updateRequest.email())) {
-                throw new DuplicateResourceException("email already taken");
-            }
-            customer.setEmail(updateRequest.email());
+            update.setEmail(updateRequest.email());
             changes = true;
         }
 
         if(!changes) {
             throw new RequestValidationException("no data changes found");
         }
-        else {
-            customerDao.updateCustomer(customer);
-        }
+        return update;
     }
 }
@@ -0,0 +1,57 @@
+package com.springbootdemo.customer;
+
+import com.springbootdemo.exception.RequestValidationException;
+
+import java.util.Comparator;
+import java.util.Locale;
+
+// "age" sorts ascending, "-age" descending; ties are always broken by id
+public record CustomerSort(
+        Field field,
+        boolean descending
+) {
+    public static final CustomerSort BY_ID = new CustomerSort(Field.ID, false);
+
+    public enum Field {
+        ID("id", Comparator.comparing(Customer::getId)),
+        NAME("name", Comparator.comparing(Customer::getName)),
+        EMAIL("email", Comparator.comparing(Customer::getEmail)),
+        AGE("age", Comparator.comparing(Customer::getAge));
+
+        private final String column;
+        private final Comparator<Customer> comparator;
+
+        Field(String column, Comparator<Customer> comparator) {
+            this.column = column;
+            this.comparator = comparator;
+        }
+
+        public String column() {
+            return column;
+        }
+    }
+
+    public static CustomerSort parse(String sort) {
+        if(sort == null || sort.isBlank()) {
+            return BY_ID;
+        }
+        boolean descending = sort.startsWith("-");
+        String name = descending ? sort.substring(1) : sort;
+        try {
+            return new CustomerSort(Field.valueOf(name.toUpperCase(Locale.ROOT)), descending);
+        } catch (IllegalArgumentException e) {
+            throw new RequestValidationException("cannot sort by [" + name + "]");
+        }
+    }
+
+    // only ever built from the enum, never from request text
+    public String orderBy() {
+        String orderBy = field.column + (descending ? " DESC" : "");
+        return field == Field.ID ? orderBy : orderBy + ", id";
+    }
+
+    public Comparator<Customer> comparator() {
+        Comparator<Customer> comparator = descending ? field.comparator.reversed() : field.comparator;
+        return field == Field.ID ? comparator : comparator.thenComparing(Customer::getId);
+    }
+}
@@ -0,0 +1,29 @@
+package com.springbootdemo.customer;
+
+// a customer mutation as the write-behind journal keeps it; id is the tracking id the client gets back
+public record CustomerWrite(
+        String id,
+        Type type,
+        Integer customerId,
+        CustomerRegistrationRequest registration,
+        CustomerUpdateRequest update,
+        String ifMatch
+) {
+    public enum Type {
+        REGISTER,
+        UPDATE,
+        DELETE
+    }
+
+    static CustomerWrite register(String id, CustomerRegistrationRequest registration) {
+        return new CustomerWrite(id, Type.REGISTER, null, registration, null, null);
+    }
+
+    static CustomerWrite update(String id, Integer customerId, CustomerUpdateRequest update, String ifMatch) {
+        return new CustomerWrite(id, Type.UPDATE, customerId, null, update, ifMatch);
+    }
+
+    static CustomerWrite delete(String id, Integer customerId) {
+        return new CustomerWrite(id, Type.DELETE, customerId, null, null, null);
+    }
+}
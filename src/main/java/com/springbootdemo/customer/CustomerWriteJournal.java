@@ -0,0 +1,216 @@
+package com.springbootdemo.customer;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// one JSON line per write and per status; a write without a status is replayed on the next start.
+// Entries a failed fsync was to cover keep failing sync, later fsyncs don't prove they're on disk
+final class CustomerWriteJournal implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerWriteJournal.class);
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record Entry(CustomerWrite write, CustomerWriteStatus status) {
+
+        static Entry of(CustomerWrite write) {
+            return new Entry(write, null);
+        }
+
+        static Entry of(CustomerWriteStatus status) {
+            return new Entry(null, status);
+        }
+    }
+
+    private final ObjectWriter writer;
+    private final FileChannel channel;
+    private final List<CustomerWrite> pending;
+    private final List<CustomerWriteStatus> statuses;
+    private final Lock syncLock = new ReentrantLock();
+    private long synced;
+    // positions (from, exclusive, to to, inclusive) a failed fsync was to cover, under syncLock
+    private final NavigableMap<Long, Long> lost = new TreeMap<>();
+    // a failed append left part of a line behind that couldn't be cut off
+    private boolean torn;
+
+    private CustomerWriteJournal(ObjectWriter writer,
+                                 FileChannel channel,
+                                 List<CustomerWrite> pending,
+                                 List<CustomerWriteStatus> statuses) throws IOException {
+        this.writer = writer;
+        this.channel = channel;
+        this.pending = pending;
+        this.statuses = statuses;
+        this.synced = channel.size();
+    }
+
+    static CustomerWriteJournal open(Path path, ObjectMapper objectMapper) throws IOException {
+        ObjectReader reader = objectMapper.readerFor(Entry.class);
+        ObjectWriter writer = objectMapper.writerFor(Entry.class);
+        Map<String, CustomerWrite> writes = new LinkedHashMap<>();
+        List<CustomerWriteStatus> statuses = new ArrayList<>();
+
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        if(Files.exists(path)) {
+            try (BufferedReader lines = Files.newBufferedReader(path)) {
+                for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+                    Entry entry;
+                    try {
+                        entry = reader.readValue(line);
+                    } catch (JsonProcessingException e) {
+                        // cut short by a crash, so never acknowledged
+                        log.warn("Skipping unreadable line in {}", path);
+                        continue;
+                    }
+                    if(entry.write() != null) {
+                        writes.put(entry.write().id(), entry.write());
+                    }
+                    if(entry.status() != null) {
+                        writes.remove(entry.status().id());
+                        statuses.add(entry.status());
+                    }
+                }
+            }
+        }
+        List<CustomerWrite> pending = List.copyOf(writes.values());
+
+        Path compacted = directory.resolve(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(compacted,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(out, lines(writer, pending.stream().map(Entry::of).toList()));
+            out.force(true);
+        }
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new CustomerWriteJournal(writer, channel, pending, statuses);
+    }
+
+    List<CustomerWrite> pending() {
+        return pending;
+    }
+
+    List<CustomerWriteStatus> statuses() {
+        return statuses;
+    }
+
+    // a failed append is cut off, or the next entry would share its line and be skipped on replay
+    long append(List<Entry> entries) throws IOException {
+        byte[] lines = lines(writer, entries);
+        long start = channel.size();
+        try {
+            if(torn) {
+                write(channel, new byte[]{'\n'});
+                torn = false;
+            }
+            write(channel, lines);
+        } catch (IOException e) {
+            cutOff(start, e);
+            throw e;
+        }
+        return channel.size();
+    }
+
+    private void cutOff(long start, IOException e) {
+        syncLock.lock();
+        try {
+            channel.truncate(start);
+            synced = Math.min(synced, start);
+        } catch (IOException truncateFailed) {
+            torn = true;
+            e.addSuppressed(truncateFailed);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    // group commit: one fsync covers every append that finished before it
+    void sync(long position) throws IOException {
+        syncLock.lock();
+        try {
+            Map.Entry<Long, Long> failed = lost.lowerEntry(position);
+            if(failed != null && position <= failed.getValue()) {
+                throw new IOException("journal entries up to " + position + " may not be on disk, an fsync failed");
+            }
+            if(synced < position) {
+                long size = channel.size();
+                try {
+                    force();
+                } catch (IOException e) {
+                    lost.put(synced, size);
+                    throw e;
+                }
+                synced = size;
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    // only when every write in the file has its status
+    void truncate() throws IOException {
+        syncLock.lock();
+        try {
+            channel.truncate(0);
+            channel.force(false);
+            synced = 0;
+            lost.clear();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static byte[] lines(ObjectWriter writer, List<Entry> entries) throws IOException {
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        for (Entry entry : entries) {
+            lines.write(writer.writeValueAsBytes(entry));
+            lines.write('\n');
+        }
+        return lines.toByteArray();
+    }
+
+    private static void write(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.springbootdemo.customer;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+// outcomes of write-behind writes whose status may not be in the journal yet
+@Repository
+@Profile("!reactive")
+public class CustomerWriteOutcomeDataAccessService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CustomerWriteOutcomeDataAccessService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void insertOutcomes(List<CustomerWriteStatus> outcomes) {
+        var sql = """
+                INSERT INTO customer_write_outcome (id, state, message)
+                VALUES (?, ?, ?)
+                ON CONFLICT (id) DO NOTHING
+                """;
+        jdbcTemplate.batchUpdate(sql, outcomes, outcomes.size(), (ps, outcome) -> {
+            ps.setObject(1, UUID.fromString(outcome.id()));
+            ps.setString(2, outcome.state().name());
+            ps.setString(3, outcome.message());
+        });
+    }
+
+    public List<CustomerWriteStatus> selectOutcomes(Collection<String> ids) {
+        var sql = """
+                SELECT id, state, message FROM customer_write_outcome WHERE id = ANY(?)
+                """;
+        return jdbcTemplate.query(
+                sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", uuids(ids))),
+                ROW_MAPPER
+        );
+    }
+
+    public void deleteOutcomes(Collection<String> ids) {
+        var sql = """
+                DELETE FROM customer_write_outcome WHERE id = ANY(?)
+                """;
+        jdbcTemplate.update(sql, ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", uuids(ids))));
+    }
+
+    private static Object[] uuids(Collection<String> ids) {
+        return ids.stream().map(UUID::fromString).toArray();
+    }
+
+    private static final RowMapper<CustomerWriteStatus> ROW_MAPPER = (rs, rowNum) -> new CustomerWriteStatus(
+            rs.getString("id"),
+            CustomerWriteStatus.State.valueOf(rs.getString("state")),
+            rs.getString("message")
+    );
+}
@@ -0,0 +1,404 @@
+package com.springbootdemo.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.springbootdemo.exception.RequestValidationException;
+import com.springbootdemo.exception.ServiceUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// a single worker applies writes in journal order, so the writes to a customer stay in order
+@Service
+@Profile("!reactive")
+@ConditionalOnProperty(name = "customer.write-behind.enabled", havingValue = "true")
+public class CustomerWriteQueue implements SmartLifecycle, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerWriteQueue.class);
+    private static final int MAX_TRACKED_STATUSES = 100_000;
+    private static final long COMPACTION_THRESHOLD = 1 << 20;
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+    private static final String NOT_JOURNALED = "not written to the journal";
+
+    private final CustomerService customerService;
+    private final CustomerDao customerDao;
+    private final CustomerWriteOutcomeDataAccessService outcomes;
+    private final TransactionOperations transactions;
+    private final CustomerWriteJournal journal;
+    private final BlockingQueue<Queued> queue;
+    private final int batchSize;
+    private final Duration retryDelay;
+    private final Cache<String, CustomerWriteStatus> statuses;
+    // held from the journal append to the queue insert, so both see the writes in the same order
+    private final Lock appendLock = new ReentrantLock();
+    // worker only: writes that may have been applied without their status reaching the journal
+    private final Set<String> inDoubt = new HashSet<>();
+    private final List<String> settled = new ArrayList<>();
+    private volatile boolean running;
+    private Thread worker;
+
+    private record Queued(CustomerWrite write, long position) {
+    }
+
+    @Autowired
+    public CustomerWriteQueue(
+            CustomerService customerService,
+            @Qualifier("cached") CustomerDao customerDao,
+            CustomerWriteOutcomeDataAccessService outcomes,
+            TransactionOperations transactions,
+            ObjectMapper objectMapper,
+            @Value("${customer.write-behind.journal}") Path journal,
+            @Value("${customer.write-behind.capacity}") int capacity,
+            @Value("${customer.write-behind.batch-size}") int batchSize,
+            @Value("${customer.write-behind.status-retention}") Duration statusRetention) throws IOException {
+        this(customerService, customerDao, outcomes, transactions, CustomerWriteJournal.open(journal, objectMapper),
+                capacity, batchSize, statusRetention, Duration.ofSeconds(1));
+    }
+
+    CustomerWriteQueue(CustomerService customerService,
+                       CustomerDao customerDao,
+                       CustomerWriteOutcomeDataAccessService outcomes,
+                       TransactionOperations transactions,
+                       CustomerWriteJournal journal,
+                       int capacity,
+                       int batchSize,
+                       Duration statusRetention,
+                       Duration retryDelay) {
+        this.customerService = customerService;
+        this.customerDao = customerDao;
+        this.outcomes = outcomes;
+        this.transactions = transactions;
+        this.journal = journal;
+        this.batchSize = batchSize;
+        this.retryDelay = retryDelay;
+        this.statuses = Caffeine.newBuilder()
+                .maximumSize(MAX_TRACKED_STATUSES)
+                .expireAfterWrite(statusRetention)
+                .build();
+
+        // what the last run accepted but didn't get to goes first, even past the capacity
+        List<CustomerWrite> recovered = journal.pending();
+        this.queue = new ArrayBlockingQueue<>(Math.max(capacity, recovered.size()));
+        journal.statuses().forEach(status -> statuses.put(status.id(), status));
+        for (CustomerWrite write : recovered) {
+            statuses.put(write.id(), CustomerWriteStatus.pending(write.id()));
+            inDoubt.add(write.id());
+            queue.add(new Queued(write, 0));
+        }
+        if(!recovered.isEmpty()) {
+            log.info("Recovered {} pending customer writes", recovered.size());
+        }
+    }
+
+    public CustomerWriteStatus register(CustomerRegistrationRequest request) {
+        if(!CustomerService.isValid(request)) {
+            throw new RequestValidationException("name, email and age are required");
+        }
+        return enqueue(CustomerWrite.register(newId(), request));
+    }
+
+    // If-Match is checked against the database when the write is applied
+    public CustomerWriteStatus update(Integer customerId, CustomerUpdateRequest request, String ifMatch) {
+        if(request == null || (request.name() == null && request.email() == null && request.age() == null)) {
+            throw new RequestValidationException("no data changes found");
+        }
+        CustomerETags.versions(ifMatch);
+        return enqueue(CustomerWrite.update(newId(), customerId, request, ifMatch));
+    }
+
+    public CustomerWriteStatus delete(Integer customerId) {
+        return enqueue(CustomerWrite.delete(newId(), customerId));
+    }
+
+    public Optional<CustomerWriteStatus> getStatus(String id) {
+        return Optional.ofNullable(statuses.getIfPresent(id));
+    }
+
+    private static String newId() {
+        return UUID.randomUUID().toString();
+    }
+
+    // the fsync is outside the lock so concurrent writes share it
+    private CustomerWriteStatus enqueue(CustomerWrite write) {
+        CustomerWriteStatus pending = CustomerWriteStatus.pending(write.id());
+        Queued queued;
+        appendLock.lock();
+        try {
+            if(queue.remainingCapacity() == 0) {
+                throw new ServiceUnavailableException("too many pending customer writes, try again later");
+            }
+            queued = new Queued(write, journal.append(List.of(CustomerWriteJournal.Entry.of(write))));
+            statuses.put(write.id(), pending);
+            queue.add(queued);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+        try {
+            journal.sync(queued.position());
+        } catch (IOException e) {
+            queue.remove(queued);
+            failUnjournaled(write);
+            throw new UncheckedIOException(e);
+        }
+        return pending;
+    }
+
+    // the status line is best effort: without it a write line that did reach the disk is replayed
+    private void failUnjournaled(CustomerWrite write) {
+        CustomerWriteStatus failed = CustomerWriteStatus.failed(write.id(), NOT_JOURNALED);
+        statuses.put(write.id(), failed);
+        appendLock.lock();
+        try {
+            journal.append(List.of(CustomerWriteJournal.Entry.of(failed)));
+        } catch (IOException e) {
+            log.warn("Failed to record that customer write {} failed", write.id(), e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void drain() {
+        List<Queued> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Queued first = queue.poll(POLL_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+                if(first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                apply(journaled(batch));
+                forgetSettled();
+                // a stop during a retry leaves the rest of the batch unapplied
+                if(running) {
+                    compactIfIdle();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                // replayed on the next start, each write with the outcome recorded for it
+                log.error("Failed to apply {} customer writes", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private List<CustomerWrite> journaled(List<Queued> batch) {
+        List<CustomerWrite> writes = new ArrayList<>(batch.size());
+        for (Queued queued : batch) {
+            try {
+                journal.sync(queued.position());
+                writes.add(queued.write());
+            } catch (IOException e) {
+                failUnjournaled(queued.write());
+            }
+        }
+        return writes;
+    }
+
+    // while the database is unreachable the rest of the batch waits, in order, and is retried
+    void apply(List<CustomerWrite> batch) throws IOException, InterruptedException {
+        List<CustomerWriteStatus> applied = new ArrayList<>(batch.size());
+        int from = 0;
+        while (from < batch.size()) {
+            int to = from + 1;
+            if(batch.get(from).type() == CustomerWrite.Type.REGISTER) {
+                while (to < batch.size() && batch.get(to).type() == CustomerWrite.Type.REGISTER) {
+                    to++;
+                }
+            }
+            try {
+                applied.addAll(applyOnce(batch.subList(from, to)));
+                from = to;
+            } catch (TransientDataAccessException | DataAccessResourceFailureException
+                     | CannotCreateTransactionException | TransactionSystemException e) {
+                // the connection may have gone after the commit
+                batch.subList(from, to).forEach(write -> inDoubt.add(write.id()));
+                log.warn("Customer writes can't reach the database, retrying in {}", retryDelay, e);
+                complete(applied);
+                applied.clear();
+                if(!running) {
+                    return;
+                }
+                Thread.sleep(retryDelay.toMillis());
+            }
+        }
+        complete(applied);
+    }
+
+    // a write in doubt whose outcome was recorded isn't applied again
+    private List<CustomerWriteStatus> applyOnce(List<CustomerWrite> writes) {
+        List<String> doubted = writes.stream().map(CustomerWrite::id).filter(inDoubt::contains).toList();
+        if(doubted.isEmpty()) {
+            return applyAndRecord(writes);
+        }
+        List<CustomerWriteStatus> results = new ArrayList<>(outcomes.selectOutcomes(doubted));
+        Set<String> recorded = new HashSet<>();
+        results.forEach(outcome -> recorded.add(outcome.id()));
+        List<CustomerWrite> unapplied = writes.stream().filter(write -> !recorded.contains(write.id())).toList();
+        if(!unapplied.isEmpty()) {
+            results.addAll(applyAndRecord(unapplied));
+        }
+        return results;
+    }
+
+    // the outcome commits with the writes; a failure is recorded after the rollback
+    private List<CustomerWriteStatus> applyAndRecord(List<CustomerWrite> writes) {
+        try {
+            return transactions.execute(transaction -> {
+                List<CustomerWriteStatus> results = applyInTransaction(writes);
+                outcomes.insertOutcomes(results);
+                return results;
+            });
+        } catch (TransientDataAccessException | DataAccessResourceFailureException
+                 | CannotCreateTransactionException | TransactionSystemException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            List<CustomerWriteStatus> failed = writes.stream()
+                    .map(write -> CustomerWriteStatus.failed(write.id(), e.getMessage()))
+                    .toList();
+            outcomes.insertOutcomes(failed);
+            return failed;
+        }
+    }
+
+    private List<CustomerWriteStatus> applyInTransaction(List<CustomerWrite> writes) {
+        CustomerWrite write = writes.get(0);
+        switch (write.type()) {
+            case REGISTER -> {
+                return register(writes);
+            }
+            case UPDATE -> customerService.updateCustomer(write.customerId(), write.update(), write.ifMatch());
+            case DELETE -> customerService.deleteCustomer(write.customerId());
+        }
+        return List.of(CustomerWriteStatus.applied(write.id()));
+    }
+
+    private List<CustomerWriteStatus> register(List<CustomerWrite> registrations) {
+        List<Customer> customers = registrations.stream()
+                .map(CustomerWrite::registration)
+                .map(request -> new Customer(request.name(), request.email(), request.age()))
+                .toList();
+        int[] inserted = customerDao.insertCustomers(customers);
+        List<CustomerWriteStatus> results = new ArrayList<>(registrations.size());
+        for (int i = 0; i < registrations.size(); i++) {
+            String id = registrations.get(i).id();
+            results.add(inserted[i] > 0
+                    ? CustomerWriteStatus.applied(id)
+                    : CustomerWriteStatus.failed(id, "email already taken"));
+        }
+        return results;
+    }
+
+    private void complete(List<CustomerWriteStatus> applied) throws IOException {
+        if(applied.isEmpty()) {
+            return;
+        }
+        long position;
+        appendLock.lock();
+        try {
+            position = journal.append(applied.stream().map(CustomerWriteJournal.Entry::of).toList());
+        } finally {
+            appendLock.unlock();
+        }
+        journal.sync(position);
+        for (CustomerWriteStatus status : applied) {
+            statuses.put(status.id(), status);
+            inDoubt.remove(status.id());
+            settled.add(status.id());
+        }
+    }
+
+    private void forgetSettled() {
+        if(settled.isEmpty()) {
+            return;
+        }
+        try {
+            outcomes.deleteOutcomes(List.copyOf(settled));
+            settled.clear();
+        } catch (DataAccessException e) {
+            log.warn("Failed to delete {} customer write outcomes", settled.size(), e);
+        }
+    }
+
+    // with nothing queued every write in the journal has its status, so it can start over
+    private void compactIfIdle() throws IOException {
+        appendLock.lock();
+        try {
+            if(queue.isEmpty() && journal.size() >= COMPACTION_THRESHOLD) {
+                journal.truncate();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        worker = Thread.ofPlatform()
+                .name("customer-write-behind")
+                .daemon(true)
+                .start(this::drain);
+    }
+
+    // after the web server has stopped taking requests; what's still queued stays in the journal
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // started before and stopped after the web server (SmartLifecycle.DEFAULT_PHASE - 2048)
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+}
@@ -0,0 +1,25 @@
+package com.springbootdemo.customer;
+
+public record CustomerWriteStatus(
+        String id,
+        State state,
+        String message
+) {
+    public enum State {
+        PENDING,
+        APPLIED,
+        FAILED
+    }
+
+    static CustomerWriteStatus pending(String id) {
+        return new CustomerWriteStatus(id, State.PENDING, null);
+    }
+
+    static CustomerWriteStatus applied(String id) {
+        return new CustomerWriteStatus(id, State.APPLIED, null);
+    }
+
+    static CustomerWriteStatus failed(String id, String message) {
+        return new CustomerWriteStatus(id, State.FAILED, message);
+    }
+}
@@ -0,0 +1,140 @@
+package com.springbootdemo.customer;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Set;
+
+@RestController
+@RequestMapping("api/v1/customers")
+@Profile("reactive")
+public class ReactiveCustomerController {
+
+    private final ReactiveCustomerService customerService;
+    private final CustomerChangeFeed changeFeed;
+
+    public ReactiveCustomerController(ReactiveCustomerService customerService, CustomerChangeFeed changeFeed) {
+        this.customerService = customerService;
+        this.changeFeed = changeFeed;
+    }
+
+    // collected for the ETag, ResponseEntityResultHandler answers a matching If-None-Match with 304
+    @GetMapping
+    public Mono<ResponseEntity<List<Customer>>> getCustomers(
+            CustomerFilter filter,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return withETag(customerService.getCustomers(filter, sort), accept);
+    }
+
+    @GetMapping(params = "ids")
+    public Mono<ResponseEntity<List<Customer>>> getCustomersByIds(
+            @RequestParam("ids") List<Integer> ids,
+            @RequestParam MultiValueMap<String, String> params,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        CustomerService.validateIdsOnly(params.keySet());
+        return withETag(customerService.getCustomersByIds(ids), accept);
+    }
+
+    private static Mono<ResponseEntity<List<Customer>>> withETag(Flux<Customer> customers, String accept) {
+        return customers.collectList()
+                .map(list -> ResponseEntity.ok()
+                        .eTag(CustomerETags.of(list, CustomerETags.representation(accept)))
+                        .body(list));
+    }
+
+    @GetMapping(params = {"limit", "!ids"})
+    public Mono<CustomerPage> getCustomersPage(
+            @RequestParam(value = "after", defaultValue = "0") Integer after,
+            @RequestParam("limit") Integer limit) {
+        return customerService.getCustomersPage(after, limit);
+    }
+
+    // a cursor without a limit still gets a page, not the whole list
+    @GetMapping(params = {"after", "!limit", "!ids"})
+    public Mono<CustomerPage> getCustomersPageAfter(
+            @RequestParam("after") Integer after,
+            @RequestParam(value = "limit", defaultValue = CustomerPage.DEFAULT_LIMIT) Integer limit) {
+        return customerService.getCustomersPage(after, limit);
+    }
+
+    @GetMapping("search")
+    public Flux<Customer> searchCustomers(
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", defaultValue = "20") Integer limit) {
+        return customerService.searchCustomers(query, limit);
+    }
+
+    @GetMapping("emails")
+    public Mono<CustomerEmailPage> getCustomerEmailsPage(
+            @RequestParam(value = "after", defaultValue = "0") Integer after,
+            @RequestParam(value = "limit", defaultValue = CustomerPage.DEFAULT_LIMIT) Integer limit) {
+        return customerService.getCustomerEmailsPage(after, limit);
+    }
+
+    // written line by line as the database hands out rows, at the pace the client reads
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Customer> exportCustomers() {
+        return customerService.getAllCustomers();
+    }
+
+    // the change feed is the JDBC one of the servlet stack: its first read blocks, so it runs on
+    // boundedElastic; the wait after it holds no thread
+    @GetMapping("changes")
+    public Mono<CustomerChanges> getChanges(
+            @RequestParam(value = "since", defaultValue = "0") Long since,
+            @RequestParam(value = "limit", defaultValue = CustomerPage.DEFAULT_LIMIT) Integer limit,
+            @RequestParam(value = "wait", defaultValue = "30") Integer wait) {
+        return Mono.<CustomerChanges>create(sink -> changeFeed.getChanges(since, limit, wait, sink::success))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @GetMapping("{customerId}")
+    public Mono<ResponseEntity<Customer>> getCustomer(
+            @PathVariable("customerId") Integer customerId,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return customerService.getCustomer(customerId)
+                .map(customer -> ResponseEntity.ok()
+                        .eTag(CustomerETags.of(customer, CustomerETags.representation(accept)))
+                        .body(customer));
+    }
+
+    @PostMapping
+    public Mono<Void> registerCustomer(@RequestBody CustomerRegistrationRequest request) {
+        return customerService.addCustomer(request);
+    }
+
+    @PostMapping("batch")
+    public Mono<List<CustomerRegistrationResult>> registerCustomers(
+            @RequestBody List<CustomerRegistrationRequest> requests) {
+        return customerService.addCustomers(requests);
+    }
+
+    @DeleteMapping("{customerId}")
+    public Mono<Void> deleteCustomer(@PathVariable("customerId") Integer customerId){
+        return customerService.deleteCustomer(customerId);
+    }
+
+    @PutMapping("{customerId}")
+    public Mono<Void> updateCustomer(
+            @PathVariable("customerId") Integer customerId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody CustomerUpdateRequest updateRequest) {
+        Set<Integer> versions = CustomerETags.versions(ifMatch);
+        if(versions == null || versions.size() == 1) {
+            Integer expectedVersion = versions == null ? null : versions.iterator().next();
+            return customerService.updateCustomer(customerId, updateRequest, expectedVersion);
+        }
+        return customerService.getCustomer(customerId)
+                .flatMap(customer -> customerService.updateCustomer(
+                        customerId, updateRequest, CustomerETags.matching(versions, customer.getVersion())));
+    }
+}
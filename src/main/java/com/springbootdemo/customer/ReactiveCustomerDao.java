@@ -0,0 +1,25 @@
+package com.springbootdemo.customer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+public interface ReactiveCustomerDao {
+    Flux<Customer> selectAllCustomers();
+    Flux<Customer> selectCustomers(CustomerFilter filter, CustomerSort sort);
+    Flux<Customer> searchCustomers(String term, int limit);
+    Flux<Customer> selectCustomersAfterId(Integer afterId, int limit);
+    Flux<CustomerEmail> selectCustomerEmailsAfterId(Integer afterId, int limit);
+    Mono<Customer> selectCustomerById(Integer id);
+    Flux<Customer> selectCustomersByIds(Collection<Integer> ids);
+    Mono<Boolean> insertCustomer(Customer customer);
+    Mono<int[]> insertCustomers(List<Customer> customers);
+    Mono<Boolean> existPersonWithEmail(String email);
+    Mono<Set<String>> selectExistingEmails(Collection<String> emails);
+    Mono<Boolean> existPersonWithId(Integer id);
+    Mono<Boolean> deleteCustomerById(Integer customerId);
+    Mono<Boolean> updateCustomer(Customer update);
+}
@@ -0,0 +1,158 @@
+package com.springbootdemo.customer;
+
+import com.springbootdemo.exception.DuplicateResourceException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Service
+@Profile("reactive")
+public class ReactiveCustomerService {
+
+    private final ReactiveCustomerDao customerDao;
+
+    public ReactiveCustomerService(@Qualifier("r2dbc") ReactiveCustomerDao customerDao) {
+        this.customerDao = customerDao;
+    }
+
+    public Flux<Customer> getAllCustomers() {
+        return customerDao.selectAllCustomers();
+    }
+
+    public Flux<Customer> getCustomers(CustomerFilter filter, String sort) {
+        return Flux.defer(() -> {
+            CustomerService.validate(filter);
+            CustomerSort customerSort = CustomerSort.parse(sort);
+            if(filter.isEmpty() && sort == null) {
+                return customerDao.selectAllCustomers();
+            }
+            return customerDao.selectCustomers(filter, customerSort);
+        });
+    }
+
+    public Flux<Customer> searchCustomers(String query, int limit) {
+        return Flux.defer(() -> {
+            String term = CustomerService.searchTerm(query, limit);
+            return customerDao.searchCustomers(term, limit)
+                    .onErrorMap(DataAccessException.class, e -> CustomerService.searchFailed(term, e));
+        });
+    }
+
+    public Flux<Customer> getCustomersByIds(List<Integer> ids) {
+        return Mono.fromCallable(() -> CustomerService.distinctIds(ids))
+                .flatMapMany(distinctIds -> customerDao.selectCustomersByIds(distinctIds)
+                        .collectList()
+                        .flatMapIterable(customers -> CustomerService.inOrderOf(distinctIds, customers)));
+    }
+
+    public Mono<CustomerPage> getCustomersPage(Integer afterId, int limit) {
+        return Mono.defer(() -> {
+            CustomerService.validatePageLimit(limit);
+            return customerDao.selectCustomersAfterId(afterId, limit + 1)
+                    .collectList()
+                    .map(customers -> CustomerService.page(customers, limit, Customer::getId, CustomerPage::new));
+        });
+    }
+
+    public Mono<CustomerEmailPage> getCustomerEmailsPage(Integer afterId, int limit) {
+        return Mono.defer(() -> {
+            CustomerService.validatePageLimit(limit);
+            return customerDao.selectCustomerEmailsAfterId(afterId, limit + 1)
+                    .collectList()
+                    .map(customers -> CustomerService.page(customers, limit, CustomerEmail::id, CustomerEmailPage::new));
+        });
+    }
+
+    public Mono<Customer> getCustomer(Integer id) {
+        return customerDao.selectCustomerById(id)
+                .switchIfEmpty(Mono.error(() -> CustomerService.notFound(id)));
+    }
+
+    public Mono<Void> addCustomer(CustomerRegistrationRequest customerRegistrationRequest) {
+        Customer customer = new Customer(
+                customerRegistrationRequest.name(),
+                customerRegistrationRequest.email(),
+                customerRegistrationRequest.age()
+        );
+        return customerDao.insertCustomer(customer)
+                .flatMap(inserted -> inserted
+                        ? Mono.<Void>empty()
+                        : Mono.error(new DuplicateResourceException("email already taken")));
+    }
+
+    public Mono<List<CustomerRegistrationResult>> addCustomers(List<CustomerRegistrationRequest> requests) {
+        return Mono.defer(() -> {
+            CustomerService.validate(requests);
+            Set<String> batchEmails = new HashSet<>();
+            // chunks run one after another, so batchEmails is never touched concurrently
+            return Flux.range(0, (requests.size() + CustomerService.REGISTRATION_CHUNK_SIZE - 1) / CustomerService.REGISTRATION_CHUNK_SIZE)
+                    .map(chunk -> chunk * CustomerService.REGISTRATION_CHUNK_SIZE)
+                    .concatMap(from -> addCustomersChunk(
+                            requests.subList(from, Math.min(from + CustomerService.REGISTRATION_CHUNK_SIZE, requests.size())),
+                            from,
+                            batchEmails))
+                    .flatMapIterable(results -> results)
+                    .collectList();
+        });
+    }
+
+    private Mono<List<CustomerRegistrationResult>> addCustomersChunk(List<CustomerRegistrationRequest> chunk,
+                                                                     int offset,
+                                                                     Set<String> batchEmails) {
+        List<String> emails = CustomerService.RegistrationChunk.emails(chunk);
+        Mono<Set<String>> existingEmails = emails.isEmpty()
+                ? Mono.just(Set.of())
+                : customerDao.selectExistingEmails(emails);
+
+        return existingEmails.flatMap(existing -> {
+            CustomerService.RegistrationChunk registrations = new CustomerService.RegistrationChunk(chunk, offset, existing, batchEmails);
+            if(registrations.customers().isEmpty()) {
+                return Mono.just(registrations.results(new int[0]));
+            }
+            return customerDao.insertCustomers(registrations.customers()).map(registrations::results);
+        });
+    }
+
+    public Mono<Void> deleteCustomer(Integer customerId) {
+        return customerDao.deleteCustomerById(customerId)
+                .flatMap(deleted -> deleted
+                        ? Mono.<Void>empty()
+                        : Mono.error(CustomerService.notFound(customerId)));
+    }
+
+    // with the version from If-Match there's no read first, the update itself checks the version
+    public Mono<Void> updateCustomer(Integer customerId, CustomerUpdateRequest updateRequest, Integer expectedVersion) {
+        if(expectedVersion == null) {
+            return updateCustomer(customerId, updateRequest);
+        }
+        return Mono.fromCallable(() -> CustomerService.versionedUpdate(customerId, updateRequest, expectedVersion))
+                .flatMap(customerDao::updateCustomer)
+                .onErrorMap(DataIntegrityViolationException.class,
+                        e -> new DuplicateResourceException("email already taken"))
+                .flatMap(updated -> updated
+                        ? Mono.<Void>empty()
+                        : customerDao.existPersonWithId(customerId)
+                                .flatMap(exists -> Mono.error(CustomerService.updateRejected(customerId, exists))));
+    }
+
+    public Mono<Void> updateCustomer(Integer customerId, CustomerUpdateRequest updateRequest) {
+        return getCustomer(customerId).flatMap(customer -> {
+            Customer update = CustomerService.changes(customer, updateRequest);
+            if(update.getEmail() == null) {
+                return customerDao.updateCustomer(update).then();
+            }
+            return customerDao.existPersonWithEmail(update.getEmail())
+                    .flatMap(taken -> taken
+                            ? Mono.error(new DuplicateResourceException("email already taken"))
+                            : customerDao.updateCustomer(update).then());
+        });
+    }
+}
@@ -0,0 +1 @@
+ALTER TABLE customer ADD COLUMN version INT NOT NULL DEFAULT 0;
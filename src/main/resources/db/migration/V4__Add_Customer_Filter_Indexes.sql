@@ -0,0 +1,5 @@
+CREATE INDEX customer_age_idx ON customer (age);
+-- text_pattern_ops: LIKE 'prefix%' uses the index under any collation
+CREATE INDEX customer_name_pattern_idx ON customer (name text_pattern_ops);
+-- the exact expression CustomerFilterQuery compares against
+CREATE INDEX customer_email_domain_idx ON customer ((substring(email FROM position('@' IN email) + 1)));
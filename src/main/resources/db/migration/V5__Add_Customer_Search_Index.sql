@@ -0,0 +1,3 @@
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+-- GiST, not GIN, so ORDER BY term <<-> ... is served by the index; same expression as the queries
+CREATE INDEX customer_search_trgm_idx ON customer USING gist ((lower(name || ' ' || email)) gist_trgm_ops(siglen = 64));
@@ -0,0 +1,32 @@
+CREATE TABLE customer_event (
+    seq BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    -- seq isn't in commit order; the feed reads by txid up to the oldest running transaction
+    txid BIGINT NOT NULL DEFAULT pg_current_xact_id()::text::bigint,
+    customer_id INT NOT NULL,
+    type TEXT NOT NULL,
+    name TEXT,
+    email TEXT,
+    age INT,
+    version INT,
+    occurred_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX customer_event_txid_seq_idx ON customer_event (txid, seq);
+
+CREATE FUNCTION customer_event_capture() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        INSERT INTO customer_event (customer_id, type, version)
+        VALUES (OLD.id, 'DELETED', OLD.version);
+        RETURN OLD;
+    END IF;
+    INSERT INTO customer_event (customer_id, type, name, email, age, version)
+    VALUES (NEW.id, CASE TG_OP WHEN 'INSERT' THEN 'CREATED' ELSE 'UPDATED' END,
+            NEW.name, NEW.email, NEW.age, NEW.version);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER customer_event_capture
+    AFTER INSERT OR UPDATE OR DELETE ON customer
+    FOR EACH ROW EXECUTE FUNCTION customer_event_capture();
@@ -0,0 +1,19 @@
+-- the id of an updated or deleted customer, '' after a TRUNCATE; inserts need none
+CREATE FUNCTION customer_cache_notify() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'TRUNCATE' THEN
+        PERFORM pg_notify('customer_cache', '');
+    ELSE
+        PERFORM pg_notify('customer_cache', OLD.id::text);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER customer_cache_notify
+    AFTER UPDATE OR DELETE ON customer
+    FOR EACH ROW EXECUTE FUNCTION customer_cache_notify();
+
+CREATE TRIGGER customer_cache_notify_truncate
+    AFTER TRUNCATE ON customer
+    FOR EACH STATEMENT EXECUTE FUNCTION customer_cache_notify();
@@ -0,0 +1,6 @@
+-- written in the transaction applying a write-behind write, read when it's replayed
+CREATE TABLE customer_write_outcome (
+    id UUID PRIMARY KEY,
+    state TEXT NOT NULL,
+    message TEXT
+);
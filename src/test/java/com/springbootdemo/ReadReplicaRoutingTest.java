@@ -0,0 +1,100 @@
+package com.springbootdemo;
+
+import com.springbootdemo.customer.Customer;
+import com.springbootdemo.customer.CustomerDao;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// two unrelated databases stand in for a primary and its replica, so where a row
+// can be read shows which one a query went to
+@Testcontainers
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = "customer.datasource.read-your-writes=0s"
+)
+class ReadReplicaRoutingTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> primary =
+            new PostgreSQLContainer<>("postgres:latest")
+                    .withDatabaseName("springbootdemo-primary")
+                    .withUsername("jj")
+                    .withPassword("1234");
+
+    @Container
+    private static final PostgreSQLContainer<?> replica =
+            new PostgreSQLContainer<>("postgres:latest")
+                    .withDatabaseName("springbootdemo-replica")
+                    .withUsername("jj")
+                    .withPassword("1234");
+
+    @BeforeAll
+    static void beforeAll() {
+        Flyway.configure()
+                .dataSource(replica.getJdbcUrl(), replica.getUsername(), replica.getPassword())
+                .load()
+                .migrate();
+    }
+
+    @DynamicPropertySource
+    private static void registerDataSourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", primary::getJdbcUrl);
+        registry.add("spring.datasource.username", primary::getUsername);
+        registry.add("spring.datasource.password", primary::getPassword);
+        registry.add("customer.datasource.replicas[0]", replica::getJdbcUrl);
+    }
+
+    @Autowired
+    @Qualifier("jdbc")
+    private CustomerDao customerDao;
+
+    @Test
+    void readsGoToReplica() {
+        // Given
+        String email = "replica-" + UUID.randomUUID() + "@email.com";
+        jdbcTemplate(replica).update("INSERT INTO customer (name, email, age) VALUES (?, ?, ?)", "name", email, 20);
+
+        // When
+        boolean actual = customerDao.existPersonWithEmail(email);
+
+        // Then
+        assertThat(actual).isTrue();
+    }
+
+    @Test
+    void writesGoToPrimary() {
+        // Given
+        String email = "primary-" + UUID.randomUUID() + "@email.com";
+
+        // When
+        customerDao.insertCustomer(new Customer("name", email, 20));
+
+        // Then
+        var sql = "SELECT count(id) FROM customer WHERE email = ?";
+        assertThat(jdbcTemplate(primary).queryForObject(sql, Integer.class, email)).isEqualTo(1);
+        assertThat(jdbcTemplate(replica).queryForObject(sql, Integer.class, email)).isZero();
+    }
+
+    private static JdbcTemplate jdbcTemplate(PostgreSQLContainer<?> container) {
+        return new JdbcTemplate(DataSourceBuilder.create()
+                .url(container.getJdbcUrl())
+                .username(container.getUsername())
+                .password(container.getPassword())
+                .build());
+    }
+}
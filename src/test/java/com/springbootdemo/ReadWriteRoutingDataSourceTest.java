@@ -0,0 +1,193 @@
+package com.springbootdemo;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadWriteRoutingDataSourceTest {
+
+    private HikariDataSource writeDataSource;
+    private HikariDataSource firstReadDataSource;
+    private HikariDataSource secondReadDataSource;
+    private Connection writeConnection;
+    private Connection firstReadConnection;
+    private Connection secondReadConnection;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        writeConnection = Mockito.mock(Connection.class);
+        firstReadConnection = Mockito.mock(Connection.class);
+        secondReadConnection = Mockito.mock(Connection.class);
+        writeDataSource = pool("customer-write", writeConnection);
+        firstReadDataSource = pool("customer-read-0", firstReadConnection);
+        secondReadDataSource = pool("customer-read-1", secondReadConnection);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void readOnlyTransactionsGoRoundRobinOverReadPools() throws SQLException {
+        // Given
+        ReadWriteRoutingDataSource underTest = routing(Duration.ZERO);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        // When
+        Connection first = underTest.getConnection();
+        Connection second = underTest.getConnection();
+        Connection third = underTest.getConnection();
+
+        // Then
+        assertThat(first).isSameAs(firstReadConnection);
+        assertThat(second).isSameAs(secondReadConnection);
+        assertThat(third).isSameAs(firstReadConnection);
+        Mockito.verify(writeDataSource, Mockito.never()).getConnection();
+    }
+
+    @Test
+    void writesGoToWritePool() throws SQLException {
+        // Given
+        ReadWriteRoutingDataSource underTest = routing(Duration.ZERO);
+
+        // When
+        underTest.getConnection().close();
+
+        // Then
+        Mockito.verify(writeConnection).close();
+        Mockito.verify(firstReadDataSource, Mockito.never()).getConnection();
+        Mockito.verify(secondReadDataSource, Mockito.never()).getConnection();
+    }
+
+    @Test
+    void readOnlyTransactionsStayOnWritePoolAfterCallersWrite() throws SQLException {
+        // Given
+        ReadWriteRoutingDataSource underTest = routing(Duration.ofMinutes(1));
+        AtomicLong primaryUntil = new AtomicLong();
+        Connection actual;
+
+        // When
+        try (ReadYourWrites ignored = ReadYourWrites.open(0, primaryUntil::set)) {
+            underTest.getConnection().close();
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+            actual = underTest.getConnection();
+        }
+
+        // Then
+        assertThat(actual).isSameAs(writeConnection);
+        assertThat(primaryUntil.get()).isGreaterThan(System.currentTimeMillis());
+        Mockito.verify(firstReadDataSource, Mockito.never()).getConnection();
+    }
+
+    @Test
+    void readOnlyTransactionsStayOnWritePoolForCallerThatWroteEarlier() throws SQLException {
+        // Given
+        ReadWriteRoutingDataSource underTest = routing(Duration.ofMinutes(1));
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        Connection actual;
+
+        // When
+        try (ReadYourWrites ignored = ReadYourWrites.open(System.currentTimeMillis() + 60_000, until -> {})) {
+            actual = underTest.getConnection();
+        }
+
+        // Then
+        assertThat(actual).isSameAs(writeConnection);
+    }
+
+    @Test
+    void callersWriteDoesNotRerouteOtherCallersReads() throws Exception {
+        // Given
+        ReadWriteRoutingDataSource underTest = routing(Duration.ofMinutes(1));
+        try (ReadYourWrites ignored = ReadYourWrites.open(0, until -> {})) {
+            underTest.getConnection().close();
+        }
+
+        // When
+        Connection actual = runAsOtherCaller(() -> {
+            try (ReadYourWrites ignored = ReadYourWrites.open(0, until -> {})) {
+                TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+                return underTest.getConnection();
+            }
+        });
+
+        // Then
+        assertThat(actual).isSameAs(firstReadConnection);
+    }
+
+    @Test
+    void writesWithoutCallerDoNotRerouteReads() throws SQLException {
+        // Given
+        ReadWriteRoutingDataSource underTest = routing(Duration.ofMinutes(1));
+        underTest.getConnection().close();
+        Connection actual;
+
+        // When
+        try (ReadYourWrites ignored = ReadYourWrites.open(0, until -> {})) {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+            actual = underTest.getConnection();
+        }
+
+        // Then
+        assertThat(actual).isSameAs(firstReadConnection);
+    }
+
+    @Test
+    void readOnlyTransactionsUseReadPoolsWhileWriteIsOpen() throws SQLException {
+        // Given
+        ReadWriteRoutingDataSource underTest = routing(Duration.ofMinutes(1));
+        try (ReadYourWrites ignored = ReadYourWrites.open(0, until -> {})) {
+            Connection write = underTest.getConnection();
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+            // When
+            Connection actual = underTest.getConnection();
+
+            // Then
+            assertThat(actual).isSameAs(firstReadConnection);
+            write.close();
+        }
+    }
+
+    // another request, on a thread of its own
+    private static Connection runAsOtherCaller(Callable<Connection> read) throws Exception {
+        FutureTask<Connection> task = new FutureTask<>(() -> {
+            try {
+                return read.call();
+            } finally {
+                TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+            }
+        });
+        Thread.ofPlatform().start(task);
+        return task.get();
+    }
+
+    private ReadWriteRoutingDataSource routing(Duration readYourWrites) {
+        return new ReadWriteRoutingDataSource(
+                writeDataSource,
+                List.of(firstReadDataSource, secondReadDataSource),
+                readYourWrites
+        );
+    }
+
+    private static HikariDataSource pool(String poolName, Connection connection) throws SQLException {
+        HikariDataSource dataSource = Mockito.mock(HikariDataSource.class);
+        Mockito.when(dataSource.getPoolName()).thenReturn(poolName);
+        Mockito.when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+}
@@ -0,0 +1,93 @@
+package com.springbootdemo.customer;
+
+import com.springbootdemo.AbstractTestcontainers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.Random;
+
+class CustomerCacheInvalidationListenerTest extends AbstractTestcontainers {
+
+    private final CustomerNearCache cache = Mockito.mock(CustomerNearCache.class);
+    private CustomerCacheInvalidationListener underTest;
+    private CustomerJDBCDataAccessService customerDao;
+
+    @BeforeEach
+    void setUp() {
+        customerDao = new CustomerJDBCDataAccessService(getJdbcTemplate(), new CustomerRowMapper(), Duration.ofSeconds(1));
+        underTest = new CustomerCacheInvalidationListener(
+                getJdbcTemplate().getDataSource(), cache, Duration.ofMillis(100));
+        underTest.start();
+        Mockito.verify(cache, Mockito.timeout(5000)).setEnabled(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.stop();
+    }
+
+    @Test
+    void updateAndDeleteEvictTheCustomer() {
+        //Given
+        String email = "_email@email.com_" + new Random().nextInt();
+        customerDao.insertCustomer(new Customer("_name_", email, 20));
+        int id = idOf(email);
+
+        //When
+        customerDao.updateCustomer(new Customer(id, null, null, 21));
+        customerDao.deleteCustomerById(id);
+
+        //Then
+        Mockito.verify(cache, Mockito.timeout(5000).times(2)).evict(id);
+    }
+
+    @Test
+    void reconnectingStartsWithAnEmptyCache() {
+        //Given
+        Mockito.clearInvocations(cache);
+
+        //When
+        getJdbcTemplate().execute("""
+                SELECT pg_terminate_backend(pid)
+                FROM pg_stat_activity
+                WHERE query = 'LISTEN %s'
+                """.formatted(CustomerCacheInvalidationListener.CHANNEL));
+
+        //Then
+        Mockito.verify(cache, Mockito.timeout(5000)).setEnabled(false);
+        Mockito.verify(cache, Mockito.timeout(5000)).setEnabled(true);
+    }
+
+    @Test
+    void failedEvictionDisablesTheCacheUntilListeningAgain() {
+        //Given
+        String email = "_email@email.com_" + new Random().nextInt();
+        customerDao.insertCustomer(new Customer("_name_", email, 20));
+        int id = idOf(email);
+        Mockito.clearInvocations(cache);
+        Mockito.doThrow(new IllegalStateException("evict failed"))
+                .doNothing()
+                .when(cache).evict(id);
+
+        //When
+        customerDao.updateCustomer(new Customer(id, null, null, 21));
+
+        //Then
+        Mockito.verify(cache, Mockito.timeout(5000)).setEnabled(false);
+        Mockito.verify(cache, Mockito.timeout(5000)).setEnabled(true);
+        customerDao.deleteCustomerById(id);
+        Mockito.verify(cache, Mockito.timeout(5000).times(2)).evict(id);
+    }
+
+    private int idOf(String email) {
+        return customerDao.selectCustomerEmailsAfterId(0, Integer.MAX_VALUE)
+                .stream()
+                .filter(customerEmail -> customerEmail.email().equals(email))
+                .findFirst()
+                .orElseThrow()
+                .id();
+    }
+}
@@ -0,0 +1,274 @@
+package com.springbootdemo.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerCachingDataAccessServiceTest {
+
+    private static final Duration EXPIRE_AFTER_WRITE = Duration.ofMinutes(5);
+
+    @Mock
+    private CustomerDao customerDao;
+    private final AtomicLong nanos = new AtomicLong();
+    private CustomerCachingDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerCachingDataAccessService(customerDao, 2, EXPIRE_AFTER_WRITE, nanos::get, Runnable::run);
+    }
+
+    @Test
+    void selectCustomerByIdHitsCacheAfterFirstLoad() {
+        // Given
+        int id = 1;
+        Customer customer = new Customer(id, "name", "email@email.com", 20);
+        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+
+        // When
+        underTest.selectCustomerById(id);
+        Optional<Customer> actual = underTest.selectCustomerById(id);
+
+        // Then
+        assertThat(actual).hasValue(customer);
+        Mockito.verify(customerDao, Mockito.times(1)).selectCustomerById(id);
+        assertThat(underTest.stats().hitCount()).isEqualTo(1);
+        assertThat(underTest.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void selectCustomerByIdReturnsCopyOfCachedCustomer() {
+        // Given
+        int id = 1;
+        Customer customer = new Customer(id, "name", "email@email.com", 20);
+        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+
+        // When
+        underTest.selectCustomerById(id).orElseThrow().setName("changed");
+
+        // Then
+        assertThat(underTest.selectCustomerById(id)).hasValue(customer);
+    }
+
+    @Test
+    void selectCustomersByIdsLoadsOnlyUncachedCustomers() {
+        // Given
+        Customer cached = new Customer(1, "name", "email1@email.com", 20);
+        Customer uncached = new Customer(2, "name", "email2@email.com", 20);
+        Mockito.when(customerDao.selectCustomerById(1)).thenReturn(Optional.of(cached));
+        Mockito.when(customerDao.selectCustomersByIds(List.of(2))).thenReturn(List.of(uncached));
+        underTest.selectCustomerById(1);
+
+        // When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(1, 2));
+
+        // Then
+        assertThat(actual).containsExactlyInAnyOrder(cached, uncached);
+        assertThat(underTest.selectCustomerById(2)).hasValue(uncached);
+        Mockito.verify(customerDao).selectCustomersByIds(List.of(2));
+        Mockito.verify(customerDao, Mockito.never()).selectCustomerById(2);
+    }
+
+    @Test
+    void selectCustomerByIdDoesNotCacheAbsentCustomer() {
+        // Given
+        int id = 1;
+        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.empty());
+
+        // When
+        underTest.selectCustomerById(id);
+        Optional<Customer> actual = underTest.selectCustomerById(id);
+
+        // Then
+        assertThat(actual).isEmpty();
+        Mockito.verify(customerDao, Mockito.times(2)).selectCustomerById(id);
+    }
+
+    @Test
+    void selectCustomerByIdReloadsAfterExpiry() {
+        // Given
+        int id = 1;
+        Customer customer = new Customer(id, "name", "email@email.com", 20);
+        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(id);
+
+        // When
+        nanos.addAndGet(EXPIRE_AFTER_WRITE.plusSeconds(1).toNanos());
+        underTest.selectCustomerById(id);
+
+        // Then
+        Mockito.verify(customerDao, Mockito.times(2)).selectCustomerById(id);
+    }
+
+    @Test
+    void cacheIsBoundedByMaximumSize() {
+        // Given
+        for (int id = 1; id <= 3; id++) {
+            Mockito.when(customerDao.selectCustomerById(id))
+                    .thenReturn(Optional.of(new Customer(id, "name", id + "@email.com", 20)));
+        }
+
+        // When
+        for (int id = 1; id <= 3; id++) {
+            underTest.selectCustomerById(id);
+        }
+
+        // Then
+        assertThat(underTest.stats().evictionCount()).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    void updateCustomerInvalidatesCachedCustomer() {
+        // Given
+        int id = 1;
+        Customer customer = new Customer(id, "name", "email@email.com", 20);
+        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(id);
+
+        // When
+        underTest.updateCustomer(customer);
+        underTest.selectCustomerById(id);
+
+        // Then
+        Mockito.verify(customerDao).updateCustomer(customer);
+        Mockito.verify(customerDao, Mockito.times(2)).selectCustomerById(id);
+    }
+
+    @Test
+    void deleteCustomerByIdInvalidatesCachedCustomer() {
+        // Given
+        int id = 1;
+        Customer customer = new Customer(id, "name", "email@email.com", 20);
+        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(id);
+
+        // When
+        underTest.deleteCustomerById(id);
+        underTest.selectCustomerById(id);
+
+        // Then
+        Mockito.verify(customerDao).deleteCustomerById(id);
+        Mockito.verify(customerDao, Mockito.times(2)).selectCustomerById(id);
+    }
+
+    @Test
+    void existPersonWithIdAsksTheDaoEvenWhenCached() {
+        // Given
+        int id = 1;
+        Customer customer = new Customer(id, "name", "email@email.com", 20);
+        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(id);
+        Mockito.when(customerDao.existPersonWithId(id)).thenReturn(false);
+
+        // When
+        boolean actual = underTest.existPersonWithId(id);
+
+        // Then
+        assertThat(actual).isFalse();
+    }
+
+    @Test
+    void existPersonWithEmailIsAnsweredFromCachedCustomer() {
+        // Given
+        int id = 1;
+        Customer customer = new Customer(id, "name", "email@email.com", 20);
+        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(id);
+
+        // When
+        boolean actual = underTest.existPersonWithEmail("email@email.com");
+
+        // Then
+        assertThat(actual).isTrue();
+        Mockito.verify(customerDao, Mockito.never()).existPersonWithEmail(Mockito.any());
+    }
+
+    @Test
+    void existPersonWithEmailAsksDaoOnceCustomerIsEvicted() {
+        // Given
+        int id = 1;
+        Customer customer = new Customer(id, "name", "email@email.com", 20);
+        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(id);
+
+        // When
+        underTest.evict(id);
+        boolean actual = underTest.existPersonWithEmail("email@email.com");
+
+        // Then
+        assertThat(actual).isFalse();
+        Mockito.verify(customerDao).existPersonWithEmail("email@email.com");
+    }
+
+    @Test
+    void selectCustomersByIdsDoesNotKeepCustomerEvictedDuringLoad() {
+        // Given
+        int id = 1;
+        Customer customer = new Customer(id, "name", "email@email.com", 20);
+        Mockito.when(customerDao.selectCustomersByIds(List.of(id))).thenAnswer(invocation -> {
+            // an update from another instance arrives while the row is read
+            underTest.evict(id);
+            return List.of(customer);
+        });
+        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+
+        // When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(id));
+        underTest.selectCustomerById(id);
+
+        // Then
+        assertThat(actual).containsExactly(customer);
+        Mockito.verify(customerDao).selectCustomerById(id);
+    }
+
+    @Test
+    void selectCustomerByIdKeepsCustomerWhenAnotherIsEvictedDuringLoad() {
+        // Given
+        int id = 1;
+        Customer customer = new Customer(id, "name", "email@email.com", 20);
+        Mockito.when(customerDao.selectCustomerById(id)).thenAnswer(invocation -> {
+            underTest.evict(2);
+            return Optional.of(customer);
+        });
+
+        // When
+        underTest.selectCustomerById(id);
+        Optional<Customer> actual = underTest.selectCustomerById(id);
+
+        // Then
+        assertThat(actual).hasValue(customer);
+        Mockito.verify(customerDao, Mockito.times(1)).selectCustomerById(id);
+        assertThat(underTest.stats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void disabledCacheReadsThroughUntilEnabled() {
+        // Given
+        int id = 1;
+        Customer customer = new Customer(id, "name", "email@email.com", 20);
+        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+        underTest.selectCustomerById(id);
+
+        // When
+        underTest.setEnabled(false);
+        underTest.selectCustomerById(id);
+        underTest.selectCustomerById(id);
+        underTest.setEnabled(true);
+        underTest.selectCustomerById(id);
+        underTest.selectCustomerById(id);
+
+        // Then
+        Mockito.verify(customerDao, Mockito.times(4)).selectCustomerById(id);
+    }
+}
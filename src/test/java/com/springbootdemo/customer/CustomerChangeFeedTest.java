@@ -0,0 +1,108 @@
+package com.springbootdemo.customer;
+
+import com.springbootdemo.exception.RequestValidationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerChangeFeedTest {
+
+    @Mock
+    private CustomerEventDataAccessService eventDao;
+    private CustomerChangeFeed underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerChangeFeed(eventDao, Duration.ofMillis(200), Duration.ofDays(7));
+    }
+
+    private static CustomerChanges changes(long next) {
+        CustomerEvent event = new CustomerEvent(1, 1, CustomerEvent.Type.CREATED,
+                "Alex", "alex@gmail.com", 21, 0, Instant.EPOCH);
+        return new CustomerChanges(List.of(event), next);
+    }
+
+    @Test
+    void answersRightAwayWhenThereAreChanges() {
+        // Given
+        List<CustomerChanges> answers = new ArrayList<>();
+        Mockito.when(eventDao.selectChangesAfter(10, 100)).thenReturn(changes(12));
+
+        // When
+        underTest.getChanges(10, 100, 30, answers::add);
+
+        // Then
+        assertThat(answers).containsExactly(changes(12));
+    }
+
+    @Test
+    void answersWaitingRequestsOnceThereAreChanges() {
+        // Given
+        List<CustomerChanges> answers = new ArrayList<>();
+        CustomerChanges none = new CustomerChanges(List.of(), 10);
+        Mockito.when(eventDao.selectChangesAfter(10, 100)).thenReturn(none, none, changes(12));
+        Mockito.when(eventDao.selectLatestTxid()).thenReturn(10L, 12L);
+        underTest.getChanges(10, 100, 30, answers::add);
+        underTest.getChanges(10, 100, 30, answers::add);
+
+        // When
+        underTest.notifyWaiters();
+        // Then
+        assertThat(answers).isEmpty();
+
+        // When
+        underTest.notifyWaiters();
+        // Then
+        assertThat(answers).containsExactly(changes(12), changes(12));
+        // two requests waiting on the same since, one read for both
+        Mockito.verify(eventDao, Mockito.times(3)).selectChangesAfter(10, 100);
+    }
+
+    @Test
+    void answersWithoutEventsWhenNotWaiting() {
+        // Given
+        List<CustomerChanges> answers = new ArrayList<>();
+        CustomerChanges none = new CustomerChanges(List.of(), 10);
+        Mockito.when(eventDao.selectChangesAfter(10, 100)).thenReturn(none);
+
+        // When
+        underTest.getChanges(10, 100, 0, answers::add);
+
+        // Then
+        assertThat(answers).containsExactly(none);
+    }
+
+    @Test
+    void willThrowWhenWaitIsTooLong() {
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getChanges(0, 100, 61, changes -> { }))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("wait must be between 0 and 60 seconds");
+        Mockito.verifyNoInteractions(eventDao);
+    }
+
+    @Test
+    void purgesInChunksUntilNothingIsLeft() {
+        // Given
+        Mockito.when(eventDao.deleteEventsBefore(Mockito.any(), Mockito.eq(10_000))).thenReturn(10_000, 42);
+
+        // When
+        underTest.purge();
+
+        // Then
+        Mockito.verify(eventDao, Mockito.times(2)).deleteEventsBefore(Mockito.any(), Mockito.eq(10_000));
+    }
+}
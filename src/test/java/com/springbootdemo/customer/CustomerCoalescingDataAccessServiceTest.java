@@ -0,0 +1,211 @@
+package com.springbootdemo.customer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerCoalescingDataAccessServiceTest {
+
+    @Mock
+    private CustomerDao customerDao;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentLookupsForTheSameIdShareOneQuery() throws Exception {
+        // Given
+        CustomerCoalescingDataAccessService underTest = Mockito.spy(
+                new CustomerCoalescingDataAccessService(customerDao, 100));
+        Customer customer = new Customer(1, "name", "email@email.com", 20);
+        CountDownLatch queryStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(customerDao.selectCustomersByIds(List.of(1))).thenAnswer(invocation -> {
+            queryStarted.countDown();
+            release.await();
+            return List.of(customer);
+        });
+        // the caller running the query only joins once it's done
+        CountDownLatch secondWaiting = joining(underTest);
+
+        // When
+        Future<Optional<Customer>> first = executor.submit(() -> underTest.selectCustomerById(1));
+        assertThat(queryStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<Optional<Customer>> second = executor.submit(() -> underTest.selectCustomerById(1));
+        assertThat(secondWaiting.await(5, TimeUnit.SECONDS)).isTrue();
+        release.countDown();
+
+        // Then
+        assertThat(first.get(5, TimeUnit.SECONDS)).hasValue(customer);
+        assertThat(second.get(5, TimeUnit.SECONDS)).hasValue(customer);
+        Mockito.verify(customerDao, Mockito.times(1)).selectCustomersByIds(List.of(1));
+        Mockito.verify(customerDao, Mockito.never()).selectCustomerById(Mockito.any());
+    }
+
+    @Test
+    void lookupWithNothingInFlightGoesRightAway() {
+        // Given
+        CustomerCoalescingDataAccessService underTest = Mockito.spy(
+                new CustomerCoalescingDataAccessService(customerDao, 100));
+        Customer customer = new Customer(1, "name", "email@email.com", 20);
+        Mockito.when(customerDao.selectCustomersByIds(List.of(1))).thenReturn(List.of(customer));
+
+        // When
+        Optional<Customer> actual = underTest.selectCustomerById(1);
+
+        // Then
+        assertThat(actual).hasValue(customer);
+        Mockito.verify(underTest, Mockito.never()).awaitLoad(Mockito.any());
+    }
+
+    @Test
+    void lookupsDuringAQueryGoInOneQueryAfterIt() throws Exception {
+        // Given
+        CustomerCoalescingDataAccessService underTest = Mockito.spy(
+                new CustomerCoalescingDataAccessService(customerDao, 100));
+        Customer customer = new Customer(2, "name", "email@email.com", 20);
+        CountDownLatch release = blockingQuery(List.of(1));
+        Mockito.when(customerDao.selectCustomersByIds(List.of(2, 3))).thenReturn(List.of(customer));
+        CountDownLatch secondWaiting = awaitingLoad(underTest);
+        CountDownLatch thirdWaiting = joining(underTest);
+
+        // When
+        Future<Optional<Customer>> first = executor.submit(() -> underTest.selectCustomerById(1));
+        Mockito.verify(customerDao, Mockito.timeout(5000)).selectCustomersByIds(List.of(1));
+        Future<Optional<Customer>> second = executor.submit(() -> underTest.selectCustomerById(2));
+        assertThat(secondWaiting.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<Optional<Customer>> third = executor.submit(() -> underTest.selectCustomerById(3));
+        assertThat(thirdWaiting.await(5, TimeUnit.SECONDS)).isTrue();
+        release.countDown();
+
+        // Then
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEmpty();
+        assertThat(second.get(5, TimeUnit.SECONDS)).hasValue(customer);
+        assertThat(third.get(5, TimeUnit.SECONDS)).isEmpty();
+        Mockito.verify(customerDao, Mockito.times(2)).selectCustomersByIds(Mockito.any());
+    }
+
+    @Test
+    void fullBatchGoesWithoutWaitingForTheQueryInFlight() throws Exception {
+        // Given
+        CustomerCoalescingDataAccessService underTest = Mockito.spy(
+                new CustomerCoalescingDataAccessService(customerDao, 2));
+        CountDownLatch release = blockingQuery(List.of(1));
+        Mockito.when(customerDao.selectCustomersByIds(List.of(2, 3))).thenReturn(List.of());
+        CountDownLatch secondWaiting = awaitingLoad(underTest);
+
+        // When
+        Future<Optional<Customer>> first = executor.submit(() -> underTest.selectCustomerById(1));
+        Mockito.verify(customerDao, Mockito.timeout(5000)).selectCustomersByIds(List.of(1));
+        Future<Optional<Customer>> second = executor.submit(() -> underTest.selectCustomerById(2));
+        assertThat(secondWaiting.await(5, TimeUnit.SECONDS)).isTrue();
+        Optional<Customer> third = underTest.selectCustomerById(3);
+
+        // Then
+        assertThat(third).isEmpty();
+        release.countDown();
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEmpty();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEmpty();
+    }
+
+    @Test
+    void everyCallerOfAFailedQuerySeesTheFailure() throws Exception {
+        // Given
+        CustomerCoalescingDataAccessService underTest = Mockito.spy(
+                new CustomerCoalescingDataAccessService(customerDao, 100));
+        CountDownLatch release = blockingQuery(List.of(1));
+        Mockito.when(customerDao.selectCustomersByIds(List.of(2, 3))).thenThrow(new QueryTimeoutException("timeout"));
+        CountDownLatch secondWaiting = awaitingLoad(underTest);
+        CountDownLatch thirdWaiting = joining(underTest);
+
+        // When
+        executor.submit(() -> underTest.selectCustomerById(1));
+        Mockito.verify(customerDao, Mockito.timeout(5000)).selectCustomersByIds(List.of(1));
+        Future<Optional<Customer>> second = executor.submit(() -> underTest.selectCustomerById(2));
+        assertThat(secondWaiting.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<Optional<Customer>> third = executor.submit(() -> underTest.selectCustomerById(3));
+        assertThat(thirdWaiting.await(5, TimeUnit.SECONDS)).isTrue();
+        release.countDown();
+
+        // Then
+        assertThatThrownBy(() -> third.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(QueryTimeoutException.class);
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(QueryTimeoutException.class);
+    }
+
+    @Test
+    void everyCallerOfAQueryThrowingAnErrorSeesTheError() throws Exception {
+        // Given
+        CustomerCoalescingDataAccessService underTest = Mockito.spy(
+                new CustomerCoalescingDataAccessService(customerDao, 100));
+        CountDownLatch release = blockingQuery(List.of(1));
+        Mockito.when(customerDao.selectCustomersByIds(List.of(2, 3))).thenThrow(new StackOverflowError());
+        CountDownLatch secondWaiting = awaitingLoad(underTest);
+        CountDownLatch thirdWaiting = joining(underTest);
+
+        // When
+        executor.submit(() -> underTest.selectCustomerById(1));
+        Mockito.verify(customerDao, Mockito.timeout(5000)).selectCustomersByIds(List.of(1));
+        Future<Optional<Customer>> second = executor.submit(() -> underTest.selectCustomerById(2));
+        assertThat(secondWaiting.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<Optional<Customer>> third = executor.submit(() -> underTest.selectCustomerById(3));
+        assertThat(thirdWaiting.await(5, TimeUnit.SECONDS)).isTrue();
+        release.countDown();
+
+        // Then
+        assertThatThrownBy(() -> third.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(StackOverflowError.class);
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(StackOverflowError.class);
+    }
+
+    // the query for ids finds nothing, once the returned latch is down
+    private CountDownLatch blockingQuery(List<Integer> ids) {
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(customerDao.selectCustomersByIds(ids)).thenAnswer(invocation -> {
+            release.await();
+            return List.of();
+        });
+        return release;
+    }
+
+    // counted down by the first caller to wait for a lookup someone else runs
+    private static CountDownLatch joining(CustomerCoalescingDataAccessService underTest) {
+        CountDownLatch joining = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            joining.countDown();
+            return invocation.callRealMethod();
+        }).when(underTest).join(Mockito.any());
+        return joining;
+    }
+
+    // counted down by the caller opening a batch, once it waits for the query in flight
+    private static CountDownLatch awaitingLoad(CustomerCoalescingDataAccessService underTest) {
+        CountDownLatch awaiting = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            awaiting.countDown();
+            return invocation.callRealMethod();
+        }).when(underTest).awaitLoad(Mockito.any());
+        return awaiting;
+    }
+}
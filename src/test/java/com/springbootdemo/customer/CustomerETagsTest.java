@@ -0,0 +1,58 @@
+package com.springbootdemo.customer;
+
+import com.springbootdemo.exception.PreconditionFailedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerETagsTest {
+
+    @Test
+    void noIfMatchOrAnyVersionExpectsNoVersion() {
+        // When
+        Set<Integer> none = CustomerETags.versions(null);
+        Set<Integer> any = CustomerETags.versions(" * ");
+
+        // Then
+        assertThat(none).isNull();
+        assertThat(any).isNull();
+    }
+
+    @Test
+    void singleETagIsItsVersion() {
+        // When
+        Set<Integer> actual = CustomerETags.versions("\"3-cbor\"");
+
+        // Then
+        assertThat(actual).containsExactly(3);
+    }
+
+    @Test
+    void listKeepsEveryStrongETag() {
+        // When
+        Set<Integer> actual = CustomerETags.versions("\"3\", W/\"5\",\"4-smile\"");
+
+        // Then
+        assertThat(actual).containsExactly(3, 4);
+        assertThat(CustomerETags.matching(actual, 4)).isEqualTo(4);
+    }
+
+    @Test
+    void listWithoutTheCurrentVersionFails() {
+        // When
+        assertThatThrownBy(() -> CustomerETags.matching(CustomerETags.versions("\"3\", \"4\""), 5))
+                .isInstanceOf(PreconditionFailedException.class);
+    }
+
+    @Test
+    void weakOrForeignETagsNeverMatch() {
+        // When
+        assertThatThrownBy(() -> CustomerETags.versions("W/\"3\""))
+                .isInstanceOf(PreconditionFailedException.class);
+        assertThatThrownBy(() -> CustomerETags.versions("\"abc\", \"3"))
+                .isInstanceOf(PreconditionFailedException.class);
+    }
+}
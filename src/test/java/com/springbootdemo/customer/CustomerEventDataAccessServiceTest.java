@@ -0,0 +1,86 @@
+package com.springbootdemo.customer;
+
+import com.springbootdemo.AbstractTestcontainers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class CustomerEventDataAccessServiceTest extends AbstractTestcontainers {
+
+    private CustomerEventDataAccessService underTest;
+    private CustomerJDBCDataAccessService customerDao;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerEventDataAccessService(getJdbcTemplate());
+        customerDao = new CustomerJDBCDataAccessService(getJdbcTemplate(), new CustomerRowMapper(), Duration.ofSeconds(1));
+    }
+
+    @Test
+    void selectChangesAfterReturnsEveryChangeInOrder() {
+        //Given
+        long since = underTest.selectLatestTxid();
+        String email = "_email@email.com_" + new Random().nextInt();
+        customerDao.insertCustomer(new Customer("_name_", email, 20));
+        int id = customerDao.selectCustomers(new CustomerFilter(null, null, null, email.substring(email.indexOf('@') + 1)),
+                        CustomerSort.BY_ID)
+                .stream()
+                .filter(customer -> customer.getEmail().equals(email))
+                .findFirst()
+                .orElseThrow()
+                .getId();
+        customerDao.updateCustomer(new Customer(id, null, null, 21));
+        customerDao.deleteCustomerById(id);
+
+        //When
+        CustomerChanges actual = underTest.selectChangesAfter(since, 100);
+
+        //Then
+        assertThat(actual.next()).isEqualTo(underTest.selectLatestTxid());
+        assertThat(actual.events())
+                .filteredOn(event -> event.customerId() == id)
+                .extracting(CustomerEvent::type, CustomerEvent::email, CustomerEvent::age)
+                .containsExactly(
+                        tuple(CustomerEvent.Type.CREATED, email, 20),
+                        tuple(CustomerEvent.Type.UPDATED, email, 21),
+                        tuple(CustomerEvent.Type.DELETED, null, null));
+        assertThat(underTest.selectChangesAfter(actual.next(), 100).events()).isEmpty();
+    }
+
+    @Test
+    void selectChangesAfterKeepsTransactionsWhole() {
+        //Given
+        long since = underTest.selectLatestTxid();
+        Random random = new Random();
+        // in auto commit the driver still sends the batch as one implicit transaction
+        customerDao.insertCustomers(List.of(
+                new Customer("_name_", "_email@email.com_" + random.nextInt(), 20),
+                new Customer("_name_", "_email@email.com_" + random.nextInt(), 20)));
+
+        //When
+        CustomerChanges actual = underTest.selectChangesAfter(since, 1);
+
+        //Then
+        assertThat(actual.events()).hasSize(2);
+    }
+
+    @Test
+    void deleteEventsBeforeKeepsNewerEvents() {
+        //Given
+        long since = underTest.selectLatestTxid();
+        customerDao.insertCustomer(new Customer("_name_", "_email@email.com_" + new Random().nextInt(), 20));
+
+        //When
+        underTest.deleteEventsBefore(Instant.now().minusSeconds(3600), 10_000);
+
+        //Then
+        assertThat(underTest.selectChangesAfter(since, 100).events()).hasSize(1);
+    }
+}
@@ -5,6 +5,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
@@ -17,7 +19,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
 
     @BeforeEach
     void setUp() {
-        underTest = new CustomerJDBCDataAccessService(getJdbcTemplate(), customerRowMapper);
+        underTest = new CustomerJDBCDataAccessService(getJdbcTemplate(), customerRowMapper, Duration.ofSeconds(1));
     }
 
     @Test
@@ -35,6 +37,129 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         assertThat(actual).isNotEmpty();
     }
 
+    @Test
+    void selectCustomersAfterId() {
+        //Given
+        Random random = new Random();
+        for (int i = 0; i < 3; i++) {
+            String email = "_email@email.com_" + random.nextInt();
+            underTest.insertCustomer(new Customer("_name_", email, 20));
+        }
+        List<Customer> all = underTest.selectAllCustomers();
+        int afterId = all.stream()
+                .map(Customer::getId)
+                .sorted()
+                .findFirst()
+                .orElseThrow();
+
+        //When
+        List<Customer> actual = underTest.selectCustomersAfterId(afterId, 2);
+
+        //Then
+        assertThat(actual).hasSize(2);
+        assertThat(actual).extracting(Customer::getId)
+                .isSorted()
+                .allMatch(id -> id > afterId);
+    }
+
+    @Test
+    void selectCustomersByFilter() {
+        //Given
+        String domain = "filter" + new Random().nextInt(Integer.MAX_VALUE) + ".com";
+        Customer young = new Customer("%_young", "young@" + domain, 19);
+        Customer old = new Customer("%_old", "old@" + domain, 60);
+        Customer other = new Customer("x_other", "other@" + domain, 40);
+        List.of(young, old, other).forEach(underTest::insertCustomer);
+
+        //When
+        List<Customer> actual = underTest.selectCustomers(
+                new CustomerFilter(18, null, "%_", domain),
+                CustomerSort.parse("-age"));
+
+        //Then
+        assertThat(actual)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("id", "version")
+                .containsExactly(old, young);
+    }
+
+    @Test
+    void searchCustomers() {
+        //Given
+        String word = "zq" + new Random().nextInt(Integer.MAX_VALUE);
+        Customer infix = new Customer("_name_ x" + word + "x", word + "x@search.com", 30);
+        Customer exact = new Customer("_name_ " + word, "exact" + word + "@search.com", 30);
+        List.of(infix, exact).forEach(underTest::insertCustomer);
+
+        //When
+        List<Customer> actual = underTest.searchCustomers(word, 10);
+
+        //Then
+        assertThat(actual)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("id", "version")
+                .containsExactly(exact, infix);
+        assertThat(underTest.searchCustomers(word, 1)).hasSize(1);
+    }
+
+    @Test
+    void searchCustomersRanksLikeListDao() {
+        //Given
+        Random random = new Random();
+        String word = "zq" + random.nextInt(Integer.MAX_VALUE);
+        CustomerListDataAccessService listDao = new CustomerListDataAccessService();
+        List<String> names = List.of("ab" + word + "ab", "_name_ " + word, "ab" + word, word + "ab");
+        for (String name : names) {
+            String email = "rank" + random.nextInt(Integer.MAX_VALUE) + "@search.com";
+            underTest.insertCustomer(new Customer(name, email, 30));
+            listDao.insertCustomer(new Customer(name, email, 30));
+        }
+
+        //When
+        List<Customer> actual = underTest.searchCustomers(word, 10);
+        List<Customer> expected = listDao.searchCustomers(word, 10);
+
+        //Then
+        assertThat(actual)
+                .extracting(Customer::getEmail)
+                .containsExactlyElementsOf(expected.stream().map(Customer::getEmail).toList())
+                .hasSize(names.size());
+    }
+
+    @Test
+    void streamAllCustomers() {
+        //Given
+        Random random = new Random();
+        String email = "_email@email.com_" + random.nextInt();
+        Customer customer = new Customer("_name_", email, 20);
+        underTest.insertCustomer(customer);
+
+        //When
+        List<Customer> actual = new ArrayList<>();
+        underTest.streamAllCustomers(actual::add);
+
+        //Then
+        assertThat(actual)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("id", "version")
+                .contains(customer);
+    }
+
+    @Test
+    void selectCustomersByIds() {
+        //Given
+        Random random = new Random();
+        Customer first = new Customer("_name_", "_email@email.com_" + random.nextInt(), 20);
+        Customer second = new Customer("_name_", "_email@email.com_" + random.nextInt(), 30);
+        underTest.insertCustomer(first);
+        underTest.insertCustomer(second);
+
+        //When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(first.getId(), second.getId(), -1));
+
+        //Then
+        assertThat(actual)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("version")
+                .containsExactlyInAnyOrder(first, second);
+    }
+
     @Test
     void selectCustomerById() {
         //Given
@@ -74,9 +199,71 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
         assertThat(actual).isEmpty();
     }
 
-//    @Test
-//    void insertCustomer() {
-//    }
+    @Test
+    void insertCustomer() {
+        //Given
+        Random random = new Random();
+        String email = "_email@email.com_" + random.nextInt();
+        Customer customer = new Customer("_name_", email, 20);
+
+        // When
+        boolean actual = underTest.insertCustomer(customer);
+
+        // Then
+        assertThat(actual).isTrue();
+        assertThat(customer.getId()).isNotNull();
+        assertThat(underTest.selectCustomerById(customer.getId())).hasValue(customer);
+    }
+
+    @Test
+    void willNotInsertCustomerWhenEmailTaken() {
+        //Given
+        Random random = new Random();
+        String email = "_email@email.com_" + random.nextInt();
+        underTest.insertCustomer(new Customer("_name_", email, 20));
+        Customer customer = new Customer("_other_name_", email, 30);
+
+        // When
+        boolean actual = underTest.insertCustomer(customer);
+
+        // Then
+        assertThat(actual).isFalse();
+        assertThat(customer.getId()).isNull();
+    }
+
+    @Test
+    void insertCustomers() {
+        //Given
+        Random random = new Random();
+        String takenEmail = "_email@email.com_" + random.nextInt();
+        underTest.insertCustomer(new Customer("_name_", takenEmail, 20));
+        String newEmail = "_email@email.com_" + random.nextInt();
+
+        // When
+        int[] actual = underTest.insertCustomers(List.of(
+                new Customer("_name_", newEmail, 21),
+                new Customer("_name_", takenEmail, 22)
+        ));
+
+        // Then
+        assertThat(actual).containsExactly(1, 0);
+        assertThat(underTest.existPersonWithEmail(newEmail)).isTrue();
+    }
+
+    @Test
+    void selectExistingEmails() {
+        //Given
+        Random random = new Random();
+        String email = "_email@email.com_" + random.nextInt();
+        underTest.insertCustomer(new Customer("_name_", email, 20));
+        String unknownEmail = "_email@email.com_" + random.nextInt();
+
+        // When
+        var actual = underTest.selectExistingEmails(List.of(email, unknownEmail));
+
+        // Then
+        assertThat(actual).containsExactly(email);
+    }
 
     @Test
     void existPersonWithEmail() {
@@ -156,13 +343,26 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
                 .orElseThrow();
 
         // When
-        underTest.deleteCustomerById(id);
+        boolean deleted = underTest.deleteCustomerById(id);
 
         // Then
+        assertThat(deleted).isTrue();
         var actual = underTest.selectCustomerById(id);
         assertThat(actual).isNotPresent();
     }
 
+    @Test
+    void willNotDeleteCustomerByIdWhenDoesNotExists() {
+        // Given
+        int id = -1;
+
+        // When
+        boolean actual = underTest.deleteCustomerById(id);
+
+        // Then
+        assertThat(actual).isFalse();
+    }
+
     @Test
     void updateCustomerName() {
         //Given
@@ -329,4 +529,48 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestcontainers {
             assertThat(c.getAge()).isEqualTo(customer.getAge());
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    void updateCustomerBumpsVersion() {
+        // Given
+        String email = "_email@email.com_" + new Random().nextInt();
+        Customer customer = new Customer("_name_", email, 20);
+        underTest.insertCustomer(customer);
+        int version = underTest.selectCustomerById(customer.getId()).orElseThrow().getVersion();
+
+        Customer update = new Customer();
+        update.setId(customer.getId());
+        update.setAge(21);
+        update.setVersion(version);
+
+        // When
+        boolean actual = underTest.updateCustomer(update);
+
+        // Then
+        assertThat(actual).isTrue();
+        assertThat(underTest.selectCustomerById(customer.getId()))
+                .hasValueSatisfying(c -> assertThat(c.getVersion()).isEqualTo(version + 1));
+    }
+
+    @Test
+    void willNotUpdateCustomerWhenVersionStale() {
+        // Given
+        String email = "_email@email.com_" + new Random().nextInt();
+        Customer customer = new Customer("_name_", email, 20);
+        underTest.insertCustomer(customer);
+        int version = underTest.selectCustomerById(customer.getId()).orElseThrow().getVersion();
+
+        Customer update = new Customer();
+        update.setId(customer.getId());
+        update.setAge(21);
+        update.setVersion(version - 1);
+
+        // When
+        boolean actual = underTest.updateCustomer(update);
+
+        // Then
+        assertThat(actual).isFalse();
+        assertThat(underTest.selectCustomerById(customer.getId()))
+                .hasValueSatisfying(c -> assertThat(c.getAge()).isEqualTo(20));
+    }
+}
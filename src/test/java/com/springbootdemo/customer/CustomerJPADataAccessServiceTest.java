@@ -6,6 +6,16 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 
 class CustomerJPADataAccessServiceTest {
@@ -19,7 +29,7 @@ class CustomerJPADataAccessServiceTest {
     @BeforeEach
     void setUp() {
         autoCloseable = MockitoAnnotations.openMocks(this);
-        underTest = new CustomerJPADataAccessService(customerRepository);
+        underTest = new CustomerJPADataAccessService(customerRepository, Duration.ofMillis(100));
     }
 
     @AfterEach
@@ -36,6 +46,71 @@ class CustomerJPADataAccessServiceTest {
         Mockito.verify(customerRepository).findAll();
     }
 
+    @Test
+    void selectCustomers() {
+        // When
+        underTest.selectCustomers(new CustomerFilter(18, null, "a", null), CustomerSort.parse("-age"));
+
+        // Then
+        Mockito.verify(customerRepository).findAll(
+                Mockito.<Specification<Customer>>any(),
+                Mockito.eq(Sort.by(Sort.Direction.DESC, "age").and(Sort.by("id"))));
+    }
+
+    @Test
+    void searchCustomers() {
+        // When
+        underTest.searchCustomers("50%", 20);
+
+        // Then
+        Mockito.verify(customerRepository).setLocalStatementTimeout("100");
+        Mockito.verify(customerRepository).search("%50\\%%", "50%", 20);
+    }
+
+    @Test
+    void selectCustomersByIds() {
+        // When
+        underTest.selectCustomersByIds(List.of(1, 2));
+
+        // Then
+        Mockito.verify(customerRepository).findAllById(List.of(1, 2));
+    }
+
+    @Test
+    void selectCustomersAfterId() {
+        // Given
+        int afterId = 10;
+        int limit = 5;
+
+        // When
+        underTest.selectCustomersAfterId(afterId, limit);
+
+        // Then
+        Mockito.verify(customerRepository).findByIdGreaterThan(afterId, PageRequest.of(0, limit, Sort.by("id")));
+    }
+
+    @Test
+    void selectCustomerEmailsAfterId() {
+        // Given
+        int afterId = 10;
+        int limit = 5;
+
+        // When
+        underTest.selectCustomerEmailsAfterId(afterId, limit);
+
+        // Then
+        Mockito.verify(customerRepository).findEmailsByIdGreaterThan(afterId, PageRequest.of(0, limit, Sort.by("id")));
+    }
+
+    @Test
+    void streamAllCustomers() {
+        // When
+        underTest.streamAllCustomers(customer -> { });
+
+        // Then
+        Mockito.verify(customerRepository).streamAll();
+    }
+
     @Test
     void selectCustomerById() {
         // Given
@@ -53,11 +128,63 @@ class CustomerJPADataAccessServiceTest {
         //Given
         Customer customer = new Customer("_name_", "_email@email.com_", 20);
 
+        Mockito.when(customerRepository.insertIfEmailAbsent("_name_", "_email@email.com_", 20))
+                .thenReturn(Optional.of(1));
+
+        // When
+        boolean actual = underTest.insertCustomer(customer);
+
+        // Then
+        assertThat(actual).isTrue();
+        assertThat(customer.getId()).isEqualTo(1);
+    }
+
+    @Test
+    void insertCustomerWhenEmailTaken() {
+        //Given
+        Customer customer = new Customer("_name_", "_email@email.com_", 20);
+        Mockito.when(customerRepository.insertIfEmailAbsent("_name_", "_email@email.com_", 20))
+                .thenReturn(Optional.empty());
+
         // When
-        underTest.insertCustomer(customer);
+        boolean actual = underTest.insertCustomer(customer);
 
         // Then
-        Mockito.verify(customerRepository).save(customer);
+        assertThat(actual).isFalse();
+        assertThat(customer.getId()).isNull();
+    }
+
+    @Test
+    void insertCustomers() {
+        //Given
+        List<Customer> customers = List.of(
+                new Customer("_name_", "_email@email.com_", 20),
+                new Customer("_name_", "_email2@email.com_", 21)
+        );
+
+        Mockito.when(customerRepository.insertIfEmailsAbsent(
+                new String[]{"_name_", "_name_"},
+                new String[]{"_email@email.com_", "_email2@email.com_"},
+                new Integer[]{20, 21}))
+                .thenReturn(Set.of("_email2@email.com_"));
+
+        // When
+        int[] actual = underTest.insertCustomers(customers);
+
+        // Then
+        assertThat(actual).containsExactly(0, 1);
+    }
+
+    @Test
+    void selectExistingEmails() {
+        //Given
+        List<String> emails = List.of("_email@email.com_", "_email2@email.com_");
+
+        // When
+        underTest.selectExistingEmails(emails);
+
+        // Then
+        Mockito.verify(customerRepository).findEmailsIn(emails);
     }
 
     @Test
@@ -90,22 +217,38 @@ class CustomerJPADataAccessServiceTest {
         // Given
         int id = 1;
 
+        Mockito.when(customerRepository.deleteCustomerById(id)).thenReturn(1);
+
         // When
-        underTest.deleteCustomerById(id);
+        boolean actual = underTest.deleteCustomerById(id);
 
         // Then
-        Mockito.verify(customerRepository).deleteById(id);
+        assertThat(actual).isTrue();
     }
 
     @Test
     void updateCustomer() {
         //Given
-        Customer customer = new Customer("_name_", "_email@email.com_", 20);
+        Customer customer = new Customer(1, "_name_", "_email@email.com_", 20);
 
         // When
         underTest.updateCustomer(customer);
 
         // Then
-        Mockito.verify(customerRepository).save(customer);
+        Mockito.verify(customerRepository).updateCustomer(1, "_name_", "_email@email.com_", 20, null);
+    }
+
+    @Test
+    void updateCustomerLeavesUnchangedPropertiesNull() {
+        //Given
+        Customer update = new Customer();
+        update.setId(1);
+        update.setAge(30);
+
+        // When
+        underTest.updateCustomer(update);
+
+        // Then
+        Mockito.verify(customerRepository).updateCustomer(1, null, null, 30, null);
     }
 }
\ No newline at end of file
@@ -0,0 +1,319 @@
+package com.springbootdemo.customer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerListDataAccessServiceTest {
+
+    private CustomerListDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerListDataAccessService();
+    }
+
+    @Test
+    void insertCustomerAssignsId() {
+        // Given
+        Customer customer = new Customer("_name_", "_email@email.com_", 20);
+
+        // When
+        boolean actual = underTest.insertCustomer(customer);
+
+        // Then
+        assertThat(actual).isTrue();
+        assertThat(customer.getId()).isNotNull();
+        assertThat(underTest.selectCustomerById(customer.getId())).hasValue(customer);
+    }
+
+    @Test
+    void willNotInsertCustomerWhenEmailTaken() {
+        // Given
+        underTest.insertCustomer(new Customer("_name_", "_email@email.com_", 20));
+        Customer customer = new Customer("_other_name_", "_email@email.com_", 30);
+
+        // When
+        boolean actual = underTest.insertCustomer(customer);
+
+        // Then
+        assertThat(actual).isFalse();
+        assertThat(customer.getId()).isNull();
+    }
+
+    @Test
+    void takenEmailUsesUpNoId() {
+        // Given
+        Customer first = new Customer("_name_", "_email@email.com_", 20);
+        underTest.insertCustomer(first);
+        underTest.insertCustomer(new Customer("_other_name_", "_email@email.com_", 30));
+        Customer next = new Customer("_next_name_", "_next_email@email.com_", 40);
+
+        // When
+        underTest.insertCustomer(next);
+
+        // Then
+        assertThat(next.getId()).isEqualTo(first.getId() + 1);
+    }
+
+    @Test
+    void selectCustomersByFilter() {
+        // Given
+        Customer alex = new Customer("alex", "alex@filter.com", 31);
+        Customer alice = new Customer("alice", "alice@filter.com", 25);
+        Customer albert = new Customer("albert", "albert@other.com", 28);
+        Customer bob = new Customer("bob", "bob@filter.com", 27);
+        List.of(alex, alice, albert, bob).forEach(underTest::insertCustomer);
+
+        // When
+        List<Customer> actual = underTest.selectCustomers(
+                new CustomerFilter(25, 30, "al", "filter.com"),
+                CustomerSort.parse("-age"));
+
+        // Then
+        assertThat(actual).containsExactly(alice);
+        assertThat(underTest.selectCustomers(new CustomerFilter(null, null, "al", null), CustomerSort.parse("-age")))
+                .containsExactly(alex, albert, alice);
+        assertThat(underTest.selectCustomers(new CustomerFilter(27, 28, null, null), CustomerSort.parse("name")))
+                .containsExactly(albert, bob);
+    }
+
+    @Test
+    void selectCustomersFollowsUpdatesAndDeletes() {
+        // Given
+        Customer customer = new Customer("_name_", "_email@filter.com", 20);
+        underTest.insertCustomer(customer);
+        CustomerFilter filter = new CustomerFilter(40, null, "_new", "moved.com");
+
+        // When
+        underTest.updateCustomer(new Customer(customer.getId(), "_new_name_", "_email@moved.com", 45));
+        List<Customer> afterUpdate = underTest.selectCustomers(filter, CustomerSort.BY_ID);
+        underTest.deleteCustomerById(customer.getId());
+        List<Customer> afterDelete = underTest.selectCustomers(filter, CustomerSort.BY_ID);
+
+        // Then
+        assertThat(afterUpdate).extracting(Customer::getId).containsExactly(customer.getId());
+        assertThat(underTest.selectCustomers(new CustomerFilter(null, 20, null, null), CustomerSort.BY_ID))
+                .extracting(Customer::getId)
+                .containsExactly(1);
+        assertThat(afterDelete).isEmpty();
+    }
+
+    @Test
+    void searchCustomers() {
+        // Given
+        Customer infix = new Customer("Marianne", "marianne@search.com", 30);
+        Customer prefix = new Customer("Annabel", "ab@search.com", 30);
+        Customer word = new Customer("Ann", "ann@search.com", 30);
+        Customer other = new Customer("Bob", "bob@search.com", 30);
+        List.of(infix, prefix, word, other).forEach(underTest::insertCustomer);
+
+        // When
+        List<Customer> actual = underTest.searchCustomers("ann", 10);
+
+        // Then
+        assertThat(actual).containsExactly(word, prefix, infix);
+        assertThat(underTest.searchCustomers("ann", 1)).containsExactly(word);
+        assertThat(underTest.searchCustomers("zzz", 10)).isEmpty();
+    }
+
+    @Test
+    void searchCustomersFollowsUpdates() {
+        // Given
+        Customer customer = new Customer("_name_", "_email@search.com", 20);
+        underTest.insertCustomer(customer);
+
+        // When
+        underTest.updateCustomer(new Customer(customer.getId(), "Quentin", null, null));
+
+        // Then
+        assertThat(underTest.searchCustomers("quent", 10))
+                .extracting(Customer::getId)
+                .containsExactly(customer.getId());
+        assertThat(underTest.searchCustomers("_name_", 10)).isEmpty();
+    }
+
+    @Test
+    void selectCustomersByIds() {
+        // Given
+        Customer customer = new Customer("_name_", "_email@email.com_", 20);
+        underTest.insertCustomer(customer);
+
+        // When
+        List<Customer> actual = underTest.selectCustomersByIds(List.of(customer.getId(), -1));
+
+        // Then
+        assertThat(actual).containsExactly(customer);
+    }
+
+    @Test
+    void selectCustomersAfterId() {
+        // Given
+        Customer customer = new Customer("_name_", "_email@email.com_", 20);
+        underTest.insertCustomer(customer);
+
+        // When
+        List<Customer> actual = underTest.selectCustomersAfterId(1, 10);
+
+        // Then
+        assertThat(actual).extracting(Customer::getId).containsExactly(2, customer.getId());
+    }
+
+    @Test
+    void selectCustomerEmailsAfterId() {
+        // Given
+        Customer customer = new Customer("_name_", "_email@email.com_", 20);
+        underTest.insertCustomer(customer);
+
+        // When
+        List<CustomerEmail> actual = underTest.selectCustomerEmailsAfterId(1, 10);
+
+        // Then
+        assertThat(actual).containsExactly(
+                new CustomerEmail(2, "j@123.com"),
+                new CustomerEmail(customer.getId(), "_email@email.com_")
+        );
+    }
+
+    @Test
+    void updateCustomerReplacesCustomer() {
+        // Given
+        Customer customer = new Customer("_name_", "_email@email.com_", 20);
+        underTest.insertCustomer(customer);
+        int id = customer.getId();
+        int size = underTest.selectAllCustomers().size();
+
+        Customer update = new Customer();
+        update.setId(id);
+        update.setEmail("_new_email@email.com_");
+
+        // When
+        underTest.updateCustomer(update);
+
+        // Then
+        assertThat(underTest.selectAllCustomers()).hasSize(size);
+        assertThat(underTest.selectCustomerById(id))
+                .hasValue(new Customer(id, "_name_", "_new_email@email.com_", 20));
+        assertThat(underTest.existPersonWithEmail("_email@email.com_")).isFalse();
+        assertThat(underTest.existPersonWithEmail("_new_email@email.com_")).isTrue();
+    }
+
+    @Test
+    void willThrowWhenUpdateCustomerEmailTaken() {
+        // Given
+        Customer customer = new Customer("_name_", "_email@email.com_", 20);
+        underTest.insertCustomer(customer);
+
+        Customer update = new Customer();
+        update.setId(customer.getId());
+        update.setEmail("a@123.com");
+
+        // When
+        assertThatThrownBy(() -> underTest.updateCustomer(update))
+                .isInstanceOf(DataIntegrityViolationException.class);
+
+        // Then
+        assertThat(underTest.selectCustomerById(customer.getId())).hasValue(customer);
+    }
+
+    @Test
+    void deleteCustomerByIdReleasesEmail() {
+        // Given
+        Customer customer = new Customer("_name_", "_email@email.com_", 20);
+        underTest.insertCustomer(customer);
+
+        // When
+        boolean actual = underTest.deleteCustomerById(customer.getId());
+
+        // Then
+        assertThat(actual).isTrue();
+        assertThat(underTest.existPersonWithId(customer.getId())).isFalse();
+        assertThat(underTest.existPersonWithEmail("_email@email.com_")).isFalse();
+        assertThat(underTest.deleteCustomerById(customer.getId())).isFalse();
+    }
+
+    @Test
+    void concurrentInsertsWithSameEmailInsertOnce() throws Exception {
+        // Given
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return underTest.insertCustomer(new Customer("_name_", "_email@email.com_", 20));
+            }));
+        }
+        start.countDown();
+        int inserted = 0;
+        for (Future<Boolean> result : results) {
+            if(result.get()) {
+                inserted++;
+            }
+        }
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        // Then
+        assertThat(inserted).isEqualTo(1);
+        assertThat(underTest.selectAllCustomers())
+                .filteredOn(c -> c.getEmail().equals("_email@email.com_"))
+                .hasSize(1);
+    }
+
+    @Test
+    void willNotUpdateCustomerWhenVersionStale() {
+        // Given
+        Customer customer = new Customer("_name_", "_email@email.com_", 20);
+        underTest.insertCustomer(customer);
+
+        Customer first = new Customer(customer.getId(), "_first_", null, null, 0);
+        Customer second = new Customer(customer.getId(), "_second_", null, null, 0);
+
+        // When
+        boolean firstUpdated = underTest.updateCustomer(first);
+        boolean secondUpdated = underTest.updateCustomer(second);
+
+        // Then
+        assertThat(firstUpdated).isTrue();
+        assertThat(secondUpdated).isFalse();
+        assertThat(underTest.selectCustomerById(customer.getId())).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo("_first_");
+            assertThat(c.getVersion()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void mutatingSelectedCustomerLeavesStoredOneAlone() {
+        // Given
+        Customer customer = new Customer("_name_", "_email@email.com_", 20);
+        underTest.insertCustomer(customer);
+
+        // When
+        underTest.selectCustomerById(customer.getId()).orElseThrow().setName("_mutated_");
+        underTest.selectAllCustomers().forEach(c -> c.setAge(99));
+
+        // Then
+        assertThat(underTest.selectCustomerById(customer.getId())).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo("_name_");
+            assertThat(c.getAge()).isEqualTo(20);
+        });
+        assertThat(underTest.selectCustomers(new CustomerFilter(null, null, "_name_", null), CustomerSort.BY_ID))
+                .extracting(Customer::getId)
+                .containsExactly(customer.getId());
+    }
+}
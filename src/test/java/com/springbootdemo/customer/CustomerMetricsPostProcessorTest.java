@@ -0,0 +1,100 @@
+package com.springbootdemo.customer;
+
+import com.springbootdemo.exception.ResourceNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.dao.QueryTimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CustomerMetricsPostProcessorTest {
+
+    private MeterRegistry meterRegistry;
+    private CustomerMetricsPostProcessor underTest;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("meterRegistry", meterRegistry);
+        underTest = new CustomerMetricsPostProcessor(beanFactory.getBeanProvider(MeterRegistry.class));
+    }
+
+    @Test
+    void timesCustomerDaoMethodsByBeanName() {
+        // Given
+        CustomerDao customerDao = (CustomerDao) underTest.postProcessAfterInitialization(
+                new CustomerListDataAccessService(), "list");
+
+        // When
+        customerDao.selectCustomerById(1);
+
+        // Then
+        Timer timer = meterRegistry.find(CustomerMetricsPostProcessor.DAO_METRIC)
+                .tags("dao", "list", "method", "selectCustomerById", "outcome", "success", "exception", "none")
+                .timer();
+        assertThat(timer).isNotNull();
+        assertThat(timer.count()).isEqualTo(1);
+    }
+
+    @Test
+    void timesFailedCustomerServiceMethods() {
+        // Given
+        CustomerService customerService = (CustomerService) underTest.postProcessAfterInitialization(
+                new CustomerService(new CustomerListDataAccessService()), "customerService");
+
+        // When
+        assertThatThrownBy(() -> customerService.getCustomer(-1))
+                .isInstanceOf(ResourceNotFoundException.class);
+
+        // Then
+        Timer timer = meterRegistry.find(CustomerMetricsPostProcessor.SERVICE_METRIC)
+                .tags("method", "getCustomer", "outcome", "error", "exception", "ResourceNotFoundException")
+                .timer();
+        assertThat(timer).isNotNull();
+        assertThat(timer.count()).isEqualTo(1);
+    }
+
+    @Test
+    void tagsOtherExceptionsByKindOnly() {
+        // Given
+        CustomerDao failing = Mockito.mock(CustomerDao.class);
+        Mockito.when(failing.selectCustomerById(1)).thenThrow(new IllegalStateException("boom"));
+        Mockito.when(failing.selectCustomerById(2)).thenThrow(new QueryTimeoutException("slow"));
+        CustomerDao customerDao = (CustomerDao) underTest.postProcessAfterInitialization(failing, "failing");
+
+        // When
+        for (int id = 1; id <= 2; id++) {
+            int customerId = id;
+            assertThatThrownBy(() -> customerDao.selectCustomerById(customerId));
+            assertThatThrownBy(() -> customerDao.selectCustomerById(customerId));
+        }
+
+        // Then
+        assertThat(meterRegistry.find(CustomerMetricsPostProcessor.DAO_METRIC)
+                .tags("dao", "failing", "outcome", "error", "exception", "RuntimeException")
+                .timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.find(CustomerMetricsPostProcessor.DAO_METRIC)
+                .tags("dao", "failing", "outcome", "error", "exception", "DataAccessException")
+                .timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.find(CustomerMetricsPostProcessor.DAO_METRIC).timers()).hasSize(2);
+    }
+
+    @Test
+    void leavesOtherBeansAlone() {
+        // Given
+        Object bean = new Object();
+
+        // When
+        Object actual = underTest.postProcessAfterInitialization(bean, "bean");
+
+        // Then
+        assertThat(actual).isSameAs(bean);
+    }
+}
@@ -0,0 +1,29 @@
+package com.springbootdemo.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerNdjsonWriterTest {
+
+    @Test
+    void writesOneCustomerPerLine() {
+        // Given
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        CustomerNdjsonWriter underTest = new CustomerNdjsonWriter(
+                new ObjectMapper().writerFor(Customer.class), outputStream);
+
+        // When
+        underTest.accept(new Customer(1, "a", "a@email.com", 20));
+        underTest.accept(new Customer(2, "b", "b@email.com", 21));
+
+        // Then
+        assertThat(outputStream.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "{\"id\":1,\"name\":\"a\",\"email\":\"a@email.com\",\"age\":20}\n" +
+                "{\"id\":2,\"name\":\"b\",\"email\":\"b@email.com\",\"age\":21}\n");
+    }
+}
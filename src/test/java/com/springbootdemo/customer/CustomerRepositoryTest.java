@@ -88,4 +88,23 @@ class CustomerRepositoryTest extends AbstractTestcontainers {
         //Then
         assertThat(actual).isFalse();
     }
-}
\ No newline at end of file
+
+    @Test
+    void insertIfEmailsAbsentLeavesOutTakenEmails() {
+        //Given
+        Random random = new Random();
+        String taken = "_email@email.com_" + random.nextInt();
+        String free = "_email2@email.com_" + random.nextInt();
+        underTest.save(new Customer("_name_", taken, 20));
+
+        //When
+        var actual = underTest.insertIfEmailsAbsent(
+                new String[]{"_name_", "_name_"},
+                new String[]{taken, free},
+                new Integer[]{21, 22});
+
+        //Then
+        assertThat(actual).containsExactly(free);
+        assertThat(underTest.existsCustomerByEmail(free)).isTrue();
+    }
+}
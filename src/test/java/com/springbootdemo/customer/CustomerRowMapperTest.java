@@ -16,10 +16,11 @@ class CustomerRowMapperTest {
         CustomerRowMapper customerRowMapper = new CustomerRowMapper();
 
         ResultSet resultSet = Mockito.mock(ResultSet.class);
-        Mockito.when(resultSet.getInt("id")).thenReturn(1);
-        Mockito.when(resultSet.getInt("age")).thenReturn(20);
-        Mockito.when(resultSet.getString("name")).thenReturn("name");
-        Mockito.when(resultSet.getString("email")).thenReturn("email@email,com");
+        Mockito.when(resultSet.getInt(1)).thenReturn(1);
+        Mockito.when(resultSet.getInt(4)).thenReturn(20);
+        Mockito.when(resultSet.getString(2)).thenReturn("name");
+        Mockito.when(resultSet.getString(3)).thenReturn("email@email,com");
+        Mockito.when(resultSet.getInt(5)).thenReturn(3);
 
         // When
         Customer actual = customerRowMapper.mapRow(resultSet, 1);
@@ -28,5 +29,6 @@ class CustomerRowMapperTest {
         Customer expected = new Customer(1, "name", "email@email,com", 20);
 
         assertThat(actual).isEqualTo(expected);
+        assertThat(actual.getVersion()).isEqualTo(3);
     }
 }
\ No newline at end of file
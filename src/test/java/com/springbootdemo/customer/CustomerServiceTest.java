@@ -1,8 +1,10 @@
 package com.springbootdemo.customer;
 
 import com.springbootdemo.exception.DuplicateResourceException;
+import com.springbootdemo.exception.PreconditionFailedException;
 import com.springbootdemo.exception.RequestValidationException;
 import com.springbootdemo.exception.ResourceNotFoundException;
+import com.springbootdemo.exception.ServiceUnavailableException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -10,10 +12,17 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.sql.SQLException;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 @ExtendWith(MockitoExtension.class)
 class CustomerServiceTest {
@@ -36,6 +45,161 @@ class CustomerServiceTest {
         Mockito.verify(customerDao).selectAllCustomers();
     }
 
+    @Test
+    void getCustomersWithoutFilterSelectsAll() {
+        // When
+        underTest.getCustomers(new CustomerFilter(null, null, null, null), null);
+
+        // Then
+        Mockito.verify(customerDao).selectAllCustomers();
+        Mockito.verify(customerDao, Mockito.never()).selectCustomers(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void canGetFilteredAndSortedCustomers() {
+        // Given
+        CustomerFilter filter = new CustomerFilter(18, 30, "a", "email.com");
+
+        // When
+        underTest.getCustomers(filter, "-age");
+
+        // Then
+        Mockito.verify(customerDao).selectCustomers(filter, new CustomerSort(CustomerSort.Field.AGE, true));
+    }
+
+    @Test
+    void willThrowWhenGetCustomersAgeRangeInvalid() {
+        // When
+        assertThatThrownBy(() -> underTest.getCustomers(new CustomerFilter(30, 18, null, null), null))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("minAge must not be greater than maxAge");
+
+        // Then
+        Mockito.verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void willThrowWhenGetCustomersSortInvalid() {
+        // When
+        assertThatThrownBy(() -> underTest.getCustomers(new CustomerFilter(null, null, null, null), "password"))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("cannot sort by [password]");
+
+        // Then
+        Mockito.verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void canSearchCustomers() {
+        // When
+        underTest.searchCustomers("  Ann ", 20);
+
+        // Then
+        Mockito.verify(customerDao).searchCustomers("ann", 20);
+    }
+
+    @Test
+    void willThrowWhenSearchTimesOut() {
+        // Given
+        Mockito.when(customerDao.searchCustomers("nobody", 20)).thenThrow(new DataAccessResourceFailureException(
+                "search", new SQLException("canceling statement due to statement timeout", "57014")));
+
+        // When
+        assertThatThrownBy(() -> underTest.searchCustomers("nobody", 20))
+                .isInstanceOf(ServiceUnavailableException.class)
+                .hasMessage("search for [nobody] took too long");
+    }
+
+    @Test
+    void willThrowWhenSearchTermTooShort() {
+        // When
+        assertThatThrownBy(() -> underTest.searchCustomers(" a ", 20))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("search needs at least 3 characters");
+
+        // Then
+        Mockito.verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void streamAllCustomers() {
+        // Given
+        Consumer<Customer> action = customer -> { };
+
+        // When
+        underTest.streamAllCustomers(action);
+
+        // Then
+        Mockito.verify(customerDao).streamAllCustomers(action);
+    }
+
+    @Test
+    void canGetCustomersPage() {
+        // Given
+        int after = 0;
+        int limit = 2;
+        List<Customer> customers = List.of(
+                new Customer(1, "a", "a@email.com", 20),
+                new Customer(2, "b", "b@email.com", 21),
+                new Customer(3, "c", "c@email.com", 22)
+        );
+        Mockito.when(customerDao.selectCustomersAfterId(after, limit + 1)).thenReturn(customers);
+
+        // When
+        CustomerPage actual = underTest.getCustomersPage(after, limit);
+
+        // Then
+        assertThat(actual.customers()).containsExactly(customers.get(0), customers.get(1));
+        assertThat(actual.nextCursor()).isEqualTo(2);
+    }
+
+    @Test
+    void willReturnNoCursorOnLastCustomersPage() {
+        // Given
+        int after = 2;
+        int limit = 2;
+        List<Customer> customers = List.of(new Customer(3, "c", "c@email.com", 22));
+        Mockito.when(customerDao.selectCustomersAfterId(after, limit + 1)).thenReturn(customers);
+
+        // When
+        CustomerPage actual = underTest.getCustomersPage(after, limit);
+
+        // Then
+        assertThat(actual.customers()).isEqualTo(customers);
+        assertThat(actual.nextCursor()).isNull();
+    }
+
+    @Test
+    void willThrowWhenCustomersPageLimitInvalid() {
+        // When
+        assertThatThrownBy(() -> underTest.getCustomersPage(0, 0))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("limit must be between 1 and 1000");
+
+        // Then
+        Mockito.verify(customerDao, Mockito.never()).selectCustomersAfterId(Mockito.any(), Mockito.anyInt());
+    }
+
+    @Test
+    void canGetCustomerEmailsPage() {
+        // Given
+        int after = 0;
+        int limit = 2;
+        List<CustomerEmail> customers = List.of(
+                new CustomerEmail(1, "a@email.com"),
+                new CustomerEmail(2, "b@email.com"),
+                new CustomerEmail(3, "c@email.com")
+        );
+        Mockito.when(customerDao.selectCustomerEmailsAfterId(after, limit + 1)).thenReturn(customers);
+
+        // When
+        CustomerEmailPage actual = underTest.getCustomerEmailsPage(after, limit);
+
+        // Then
+        assertThat(actual.customers()).containsExactly(customers.get(0), customers.get(1));
+        assertThat(actual.nextCursor()).isEqualTo(2);
+    }
+
     @Test
     void canGetCustomer() {
         // Given
@@ -50,6 +214,41 @@ class CustomerServiceTest {
         assertThat(actual).isEqualTo(customer);
     }
 
+    @Test
+    void canGetCustomersByIdsInTheOrderAsked() {
+        // Given
+        Customer first = new Customer(3, "name", "email3@email.com", 20);
+        Customer second = new Customer(1, "name", "email1@email.com", 20);
+        Mockito.when(customerDao.selectCustomersByIds(List.of(3, 2, 1))).thenReturn(List.of(second, first));
+
+        // When
+        List<Customer> actual = underTest.getCustomersByIds(List.of(3, 2, 3, 1));
+
+        // Then
+        assertThat(actual).containsExactly(first, second);
+    }
+
+    @Test
+    void willThrowWhenGetCustomersByIdsTooMany() {
+        // Given
+        List<Integer> ids = IntStream.rangeClosed(1, 1001).boxed().toList();
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.getCustomersByIds(ids))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("at most 1000 customer ids per request");
+        Mockito.verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void willThrowWhenIdsComeWithPagingFilteringOrSorting() {
+        // When
+        assertThatThrownBy(() -> CustomerService.validateIdsOnly(Set.of("ids", "sort", "limit", "_")))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("ids can't be combined with limit, sort");
+    }
+
     @Test
     void willThrowWhenGetCustomerReturnEmptyOptional() {
         // Given
@@ -66,7 +265,7 @@ class CustomerServiceTest {
     void addCustomer() {
         // Given
         String email = "email@email.com";
-        Mockito.when(customerDao.existPersonWithEmail(email)).thenReturn(false);
+        Mockito.when(customerDao.insertCustomer(Mockito.any())).thenReturn(true);
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest("name", email, 20);
 
@@ -89,7 +288,7 @@ class CustomerServiceTest {
     void willThrowWhenEmailExistWhenAddCustomer() {
         // Given
         String email = "email@email.com";
-        Mockito.when(customerDao.existPersonWithEmail(email)).thenReturn(true);
+        Mockito.when(customerDao.insertCustomer(Mockito.any())).thenReturn(false);
 
         CustomerRegistrationRequest request = new CustomerRegistrationRequest("name", email, 20);
 
@@ -99,14 +298,59 @@ class CustomerServiceTest {
                 .hasMessage("email already taken");
 
         // Then
-        Mockito.verify(customerDao, Mockito.never()).insertCustomer(Mockito.any());
+        Mockito.verify(customerDao, Mockito.never()).existPersonWithEmail(Mockito.any());
+    }
+
+    @Test
+    void addCustomers() {
+        // Given
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("new", "new@email.com", 20),
+                new CustomerRegistrationRequest("taken", "taken@email.com", 21),
+                new CustomerRegistrationRequest("again", "new@email.com", 22),
+                new CustomerRegistrationRequest(null, "invalid@email.com", 23),
+                new CustomerRegistrationRequest("raced", "raced@email.com", 24)
+        );
+        Mockito.when(customerDao.selectExistingEmails(
+                List.of("new@email.com", "taken@email.com", "new@email.com", "raced@email.com")))
+                .thenReturn(Set.of("taken@email.com"));
+        Mockito.when(customerDao.insertCustomers(Mockito.anyList())).thenReturn(new int[]{1, 0});
+
+        // When
+        List<CustomerRegistrationResult> actual = underTest.addCustomers(requests);
+
+        // Then
+        ArgumentCaptor<List<Customer>> customersArgumentCaptor = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(customerDao).insertCustomers(customersArgumentCaptor.capture());
+        assertThat(customersArgumentCaptor.getValue())
+                .extracting(Customer::getEmail)
+                .containsExactly("new@email.com", "raced@email.com");
+
+        assertThat(actual).containsExactly(
+                new CustomerRegistrationResult(0, "new@email.com", CustomerRegistrationResult.Status.CREATED),
+                new CustomerRegistrationResult(1, "taken@email.com", CustomerRegistrationResult.Status.DUPLICATE),
+                new CustomerRegistrationResult(2, "new@email.com", CustomerRegistrationResult.Status.DUPLICATE),
+                new CustomerRegistrationResult(3, "invalid@email.com", CustomerRegistrationResult.Status.INVALID),
+                new CustomerRegistrationResult(4, "raced@email.com", CustomerRegistrationResult.Status.DUPLICATE)
+        );
+    }
+
+    @Test
+    void willThrowWhenAddCustomersEmpty() {
+        // When
+        assertThatThrownBy(() -> underTest.addCustomers(List.of()))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("no customers to register");
+
+        // Then
+        Mockito.verify(customerDao, Mockito.never()).insertCustomers(Mockito.any());
     }
 
     @Test
     void deleteCustomer() {
         // Given
         int id = 10;
-        Mockito.when(customerDao.existPersonWithId(id)).thenReturn(true);
+        Mockito.when(customerDao.deleteCustomerById(id)).thenReturn(true);
 
         // When
         underTest.deleteCustomer(id);
@@ -119,7 +363,7 @@ class CustomerServiceTest {
     void willThrowWhenDeleteCustomerIdNotExist() {
         // Given
         int id = 10;
-        Mockito.when(customerDao.existPersonWithId(id)).thenReturn(false);
+        Mockito.when(customerDao.deleteCustomerById(id)).thenReturn(false);
 
         // When
         assertThatThrownBy(() ->underTest.deleteCustomer(id))
@@ -127,7 +371,7 @@ class CustomerServiceTest {
                 .hasMessage("customer with id [" + id + "] not found");
 
         // Then
-        Mockito.verify(customerDao, Mockito.never()).deleteCustomerById(id);
+        Mockito.verify(customerDao, Mockito.never()).existPersonWithId(id);
     }
 
     @Test
@@ -174,9 +418,10 @@ class CustomerServiceTest {
         Mockito.verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
         Customer capturedCustomer = customerArgumentCaptor.getValue();
 
+        assertThat(capturedCustomer.getId()).isEqualTo(id);
         assertThat(capturedCustomer.getName()).isEqualTo(updateRequest.name());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
+        assertThat(capturedCustomer.getEmail()).isNull();
+        assertThat(capturedCustomer.getAge()).isNull();
     }
 
     @Test
@@ -200,9 +445,10 @@ class CustomerServiceTest {
         Mockito.verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
         Customer capturedCustomer = customerArgumentCaptor.getValue();
 
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
+        assertThat(capturedCustomer.getId()).isEqualTo(id);
+        assertThat(capturedCustomer.getName()).isNull();
         assertThat(capturedCustomer.getEmail()).isEqualTo(newEmail);
-        assertThat(capturedCustomer.getAge()).isEqualTo(customer.getAge());
+        assertThat(capturedCustomer.getAge()).isNull();
     }
 
     @Test
@@ -223,11 +469,37 @@ class CustomerServiceTest {
         Mockito.verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
         Customer capturedCustomer = customerArgumentCaptor.getValue();
 
-        assertThat(capturedCustomer.getName()).isEqualTo(customer.getName());
-        assertThat(capturedCustomer.getEmail()).isEqualTo(customer.getEmail());
+        assertThat(capturedCustomer.getId()).isEqualTo(id);
+        assertThat(capturedCustomer.getName()).isNull();
+        assertThat(capturedCustomer.getEmail()).isNull();
         assertThat(capturedCustomer.getAge()).isEqualTo(updateRequest.age());
     }
 
+    @Test
+    void canUpdateOnlyChangedCustomerProperties() {
+        // Given
+        int id = 10;
+        Customer customer = new Customer(id, "name", "email@email.com", 20);
+        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("newName", customer.getEmail(), customer.getAge());
+
+        // When
+        underTest.updateCustomer(id, updateRequest);
+
+        // Then
+        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
+
+        Mockito.verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        Customer capturedCustomer = customerArgumentCaptor.getValue();
+
+        assertThat(capturedCustomer.getId()).isEqualTo(id);
+        assertThat(capturedCustomer.getName()).isEqualTo(updateRequest.name());
+        assertThat(capturedCustomer.getEmail()).isNull();
+        assertThat(capturedCustomer.getAge()).isNull();
+        Mockito.verify(customerDao, Mockito.never()).existPersonWithEmail(Mockito.any());
+    }
+
     @Test
     void willThrowWhenUpdateCustomerEmailTaken() {
         // Given
@@ -249,6 +521,24 @@ class CustomerServiceTest {
         Mockito.verify(customerDao, Mockito.never()).updateCustomer(Mockito.any());
     }
 
+    @Test
+    void willThrowWhenUpdateCustomerEmailTakenConcurrently() {
+        // Given
+        int id = 10;
+        Customer customer = new Customer(id, "name", "email@email.com", 20);
+        Mockito.when(customerDao.selectCustomerById(id)).thenReturn(Optional.of(customer));
+
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest(null, "newEmail@newEmail.com", null);
+        Mockito.when(customerDao.updateCustomer(Mockito.any()))
+                .thenThrow(new DataIntegrityViolationException("email already taken"));
+
+        // When
+        // Then
+        assertThatThrownBy(() ->underTest.updateCustomer(id, updateRequest))
+                .isInstanceOf(DuplicateResourceException.class)
+                .hasMessage("email already taken");
+    }
+
     @Test
     void willThrowWhenUpdateCustomerNoChanges() {
         // Given
@@ -266,4 +556,60 @@ class CustomerServiceTest {
         // Then
         Mockito.verify(customerDao, Mockito.never()).updateCustomer(Mockito.any());
     }
-}
\ No newline at end of file
+
+    @Test
+    void canUpdateCustomerWithExpectedVersion() {
+        // Given
+        int id = 10;
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("name", null, null);
+        Mockito.when(customerDao.updateCustomer(Mockito.any())).thenReturn(true);
+
+        // When
+        underTest.updateCustomer(id, updateRequest, "\"3\"");
+
+        // Then
+        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
+        Mockito.verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        Customer capturedCustomer = customerArgumentCaptor.getValue();
+
+        assertThat(capturedCustomer.getId()).isEqualTo(id);
+        assertThat(capturedCustomer.getName()).isEqualTo("name");
+        assertThat(capturedCustomer.getVersion()).isEqualTo(3);
+        Mockito.verify(customerDao, Mockito.never()).selectCustomerById(Mockito.any());
+    }
+
+    @Test
+    void canUpdateCustomerWithAnyListedVersion() {
+        // Given
+        int id = 10;
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("name", null, null);
+        Mockito.when(customerDao.updateCustomer(Mockito.any())).thenReturn(false, true);
+
+        // When
+        underTest.updateCustomer(id, updateRequest, "\"3\", \"4\"");
+
+        // Then
+        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
+        Mockito.verify(customerDao, Mockito.times(2)).updateCustomer(customerArgumentCaptor.capture());
+        assertThat(customerArgumentCaptor.getAllValues()).extracting(Customer::getVersion).containsExactly(3, 4);
+        Mockito.verify(customerDao, Mockito.never()).selectCustomerById(Mockito.any());
+        Mockito.verify(customerDao, Mockito.never()).existPersonWithId(Mockito.any());
+    }
+
+    @Test
+    void willThrowWhenUpdateCustomerVersionStale() {
+        // Given
+        int id = 10;
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("name", null, null);
+        Mockito.when(customerDao.updateCustomer(Mockito.any())).thenReturn(false);
+        Mockito.when(customerDao.existPersonWithId(id)).thenReturn(true);
+
+        // When
+        assertThatThrownBy(() -> underTest.updateCustomer(id, updateRequest, "\"3\", \"4\""))
+                .isInstanceOf(PreconditionFailedException.class)
+                .hasMessage("customer has been modified");
+
+        // Then
+        Mockito.verify(customerDao, Mockito.never()).selectCustomerById(Mockito.any());
+    }
+}
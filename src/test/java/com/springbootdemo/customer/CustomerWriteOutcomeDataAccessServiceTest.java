@@ -0,0 +1,50 @@
+package com.springbootdemo.customer;
+
+import com.springbootdemo.AbstractTestcontainers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerWriteOutcomeDataAccessServiceTest extends AbstractTestcontainers {
+
+    private CustomerWriteOutcomeDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerWriteOutcomeDataAccessService(getJdbcTemplate());
+    }
+
+    @Test
+    void selectOutcomesReturnsWhatWasRecordedUntilDeleted() {
+        //Given
+        CustomerWriteStatus applied = CustomerWriteStatus.applied(UUID.randomUUID().toString());
+        CustomerWriteStatus failed = CustomerWriteStatus.failed(UUID.randomUUID().toString(), "email already taken");
+        String unknown = UUID.randomUUID().toString();
+        underTest.insertOutcomes(List.of(applied, failed));
+
+        //When
+        List<CustomerWriteStatus> actual = underTest.selectOutcomes(List.of(applied.id(), failed.id(), unknown));
+
+        //Then
+        assertThat(actual).containsExactlyInAnyOrder(applied, failed);
+        underTest.deleteOutcomes(List.of(applied.id(), failed.id()));
+        assertThat(underTest.selectOutcomes(List.of(applied.id(), failed.id()))).isEmpty();
+    }
+
+    @Test
+    void insertOutcomesKeepsTheFirstOutcome() {
+        //Given
+        String id = UUID.randomUUID().toString();
+        underTest.insertOutcomes(List.of(CustomerWriteStatus.applied(id)));
+
+        //When
+        underTest.insertOutcomes(List.of(CustomerWriteStatus.failed(id, "customer has been modified")));
+
+        //Then
+        assertThat(underTest.selectOutcomes(List.of(id))).containsExactly(CustomerWriteStatus.applied(id));
+    }
+}
@@ -0,0 +1,246 @@
+package com.springbootdemo.customer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springbootdemo.exception.RequestValidationException;
+import com.springbootdemo.exception.ResourceNotFoundException;
+import com.springbootdemo.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@ExtendWith(MockitoExtension.class)
+class CustomerWriteQueueTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<CustomerWriteQueue> queues = new ArrayList<>();
+
+    @TempDir
+    private Path directory;
+    @Mock
+    private CustomerService customerService;
+    @Mock
+    private CustomerDao customerDao;
+    @Mock
+    private CustomerWriteOutcomeDataAccessService outcomes;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (CustomerWriteQueue queue : queues) {
+            if(queue.isRunning()) {
+                queue.stop();
+            }
+            queue.close();
+        }
+    }
+
+    private CustomerWriteQueue openQueue(int capacity) throws IOException {
+        return openQueue(capacity, openJournal());
+    }
+
+    private CustomerWriteJournal openJournal() throws IOException {
+        return CustomerWriteJournal.open(directory.resolve("writes.journal"), objectMapper);
+    }
+
+    private CustomerWriteQueue openQueue(int capacity, CustomerWriteJournal journal) {
+        CustomerWriteQueue queue = new CustomerWriteQueue(
+                customerService, customerDao, outcomes, TransactionOperations.withoutTransaction(), journal, capacity, 100, Duration.ofHours(1), Duration.ofMillis(10));
+        queues.add(queue);
+        return queue;
+    }
+
+    @Test
+    void appliesWritesInOrderWithRegistrationsBatched() throws IOException {
+        // Given
+        CustomerWriteQueue underTest = openQueue(10);
+        CustomerRegistrationRequest alex = new CustomerRegistrationRequest("Alex", "alex@gmail.com", 21);
+        CustomerRegistrationRequest jamila = new CustomerRegistrationRequest("Jamila", "jamila@gmail.com", 19);
+        CustomerUpdateRequest update = new CustomerUpdateRequest("Alexander", null, null);
+        Mockito.when(customerDao.insertCustomers(Mockito.anyList())).thenReturn(new int[]{1, 1});
+
+        CustomerWriteStatus first = underTest.register(alex);
+        CustomerWriteStatus second = underTest.register(jamila);
+        CustomerWriteStatus third = underTest.update(1, update, "\"3\"");
+        CustomerWriteStatus fourth = underTest.delete(2);
+        assertThat(underTest.getStatus(first.id())).hasValue(CustomerWriteStatus.pending(first.id()));
+
+        // When
+        underTest.start();
+
+        Mockito.verify(customerService, Mockito.timeout(5000)).deleteCustomer(2);
+        underTest.stop();
+
+        // Then
+        InOrder inOrder = Mockito.inOrder(customerDao, customerService);
+        inOrder.verify(customerDao).insertCustomers(List.of(
+                new Customer("Alex", "alex@gmail.com", 21),
+                new Customer("Jamila", "jamila@gmail.com", 19)));
+        inOrder.verify(customerService).updateCustomer(1, update, "\"3\"");
+        inOrder.verify(customerService).deleteCustomer(2);
+        Mockito.verify(outcomes).insertOutcomes(List.of(
+                CustomerWriteStatus.applied(first.id()), CustomerWriteStatus.applied(second.id())));
+        for (CustomerWriteStatus status : List.of(first, second, third, fourth)) {
+            assertThat(underTest.getStatus(status.id())).hasValue(CustomerWriteStatus.applied(status.id()));
+        }
+    }
+
+    @Test
+    void replaysPendingWritesAfterRestart() throws IOException {
+        // Given
+        CustomerWriteQueue beforeCrash = openQueue(10);
+        CustomerWriteStatus pending = beforeCrash.delete(1);
+        beforeCrash.close();
+        // a line half written when the process died
+        Files.writeString(directory.resolve("writes.journal"), "{\"write\":{\"id\":\"torn",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        // When
+        CustomerWriteQueue underTest = openQueue(10);
+        underTest.start();
+
+        // Then
+        Mockito.verify(customerService, Mockito.timeout(5000)).deleteCustomer(1);
+        underTest.stop();
+        underTest.close();
+        assertThat(openQueue(10).getStatus(pending.id())).hasValue(CustomerWriteStatus.applied(pending.id()));
+        Mockito.verify(customerService, Mockito.times(1)).deleteCustomer(1);
+    }
+
+    @Test
+    void recordsWhyAWriteFailed() throws IOException {
+        // Given
+        CustomerWriteQueue underTest = openQueue(10);
+        Mockito.when(customerDao.insertCustomers(Mockito.anyList())).thenReturn(new int[]{0});
+        Mockito.doThrow(new ResourceNotFoundException("customer with id [1] not found"))
+                .when(customerService).deleteCustomer(1);
+        CustomerWriteStatus registration = underTest.register(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 21));
+        CustomerWriteStatus deletion = underTest.delete(1);
+
+        // When
+        underTest.start();
+        Mockito.verify(customerService, Mockito.timeout(5000)).deleteCustomer(1);
+        underTest.stop();
+
+        // Then
+        assertThat(underTest.getStatus(registration.id()))
+                .hasValue(CustomerWriteStatus.failed(registration.id(), "email already taken"));
+        assertThat(underTest.getStatus(deletion.id()))
+                .hasValue(CustomerWriteStatus.failed(deletion.id(), "customer with id [1] not found"));
+        Mockito.verify(outcomes).insertOutcomes(List.of(
+                CustomerWriteStatus.failed(deletion.id(), "customer with id [1] not found")));
+    }
+
+    @Test
+    void replayedWriteReportsTheRecordedOutcomeInsteadOfRunningAgain() throws IOException {
+        // Given
+        CustomerWriteQueue beforeCrash = openQueue(10);
+        CustomerWriteStatus registration = beforeCrash.register(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 21));
+        CustomerWriteStatus deletion = beforeCrash.delete(1);
+        beforeCrash.close();
+        Mockito.when(outcomes.selectOutcomes(List.of(registration.id())))
+                .thenReturn(List.of(CustomerWriteStatus.applied(registration.id())));
+
+        // When
+        CustomerWriteQueue underTest = openQueue(10);
+        underTest.start();
+
+        // Then
+        Mockito.verify(outcomes, Mockito.timeout(5000))
+                .deleteOutcomes(List.of(registration.id(), deletion.id()));
+        underTest.stop();
+        Mockito.verify(customerDao, Mockito.never()).insertCustomers(Mockito.anyList());
+        Mockito.verify(customerService).deleteCustomer(1);
+        assertThat(underTest.getStatus(registration.id()))
+                .hasValue(CustomerWriteStatus.applied(registration.id()));
+        assertThat(underTest.getStatus(deletion.id())).hasValue(CustomerWriteStatus.applied(deletion.id()));
+    }
+
+    @Test
+    void retriesWhileTheDatabaseIsUnreachable() throws IOException {
+        // Given
+        CustomerWriteQueue underTest = openQueue(10);
+        Mockito.doThrow(new CannotGetJdbcConnectionException("connection refused"))
+                .doNothing()
+                .when(customerService).deleteCustomer(1);
+        CustomerWriteStatus deletion = underTest.delete(1);
+
+        // When
+        underTest.start();
+        Mockito.verify(customerService, Mockito.timeout(5000).times(2)).deleteCustomer(1);
+        underTest.stop();
+
+        // Then
+        assertThat(underTest.getStatus(deletion.id())).hasValue(CustomerWriteStatus.applied(deletion.id()));
+    }
+
+    @Test
+    void writeThatIsNotOnDiskIsNotApplied() throws IOException {
+        // Given
+        CustomerWriteJournal journal = Mockito.spy(openJournal());
+        CustomerWriteQueue underTest = openQueue(10, journal);
+        Mockito.doThrow(new IOException("fsync failed")).when(journal).force();
+        assertThatThrownBy(() -> underTest.delete(1))
+                .isInstanceOf(UncheckedIOException.class);
+        Mockito.doCallRealMethod().when(journal).force();
+        CustomerWriteStatus deletion = underTest.delete(2);
+
+        // When
+        underTest.start();
+        Mockito.verify(customerService, Mockito.timeout(5000)).deleteCustomer(2);
+        underTest.stop();
+        underTest.close();
+
+        // Then
+        assertThat(underTest.getStatus(deletion.id())).hasValue(CustomerWriteStatus.applied(deletion.id()));
+        Mockito.verify(customerService, Mockito.never()).deleteCustomer(1);
+        try (CustomerWriteJournal reopened = openJournal()) {
+            assertThat(reopened.pending()).isEmpty();
+        }
+    }
+
+    @Test
+    void willRejectWritesWhenQueueIsFull() throws IOException {
+        // Given
+        CustomerWriteQueue underTest = openQueue(1);
+        underTest.delete(1);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.delete(2))
+                .isInstanceOf(ServiceUnavailableException.class)
+                .hasMessage("too many pending customer writes, try again later");
+    }
+
+    @Test
+    void willThrowWhenRegistrationIsIncomplete() throws IOException {
+        // Given
+        CustomerWriteQueue underTest = openQueue(10);
+
+        // When
+        // Then
+        assertThatThrownBy(() -> underTest.register(new CustomerRegistrationRequest("Alex", null, 21)))
+                .isInstanceOf(RequestValidationException.class)
+                .hasMessage("name, email and age are required");
+    }
+}
@@ -0,0 +1,176 @@
+package com.springbootdemo.customer;
+
+import com.springbootdemo.exception.DuplicateResourceException;
+import com.springbootdemo.exception.RequestValidationException;
+import com.springbootdemo.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveCustomerServiceTest {
+
+    @Mock
+    private ReactiveCustomerDao customerDao;
+    private ReactiveCustomerService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ReactiveCustomerService(customerDao);
+    }
+
+    @Test
+    void canGetCustomersPage() {
+        // Given
+        List<Customer> customers = List.of(
+                new Customer(1, "a", "a@email.com", 20),
+                new Customer(2, "b", "b@email.com", 21),
+                new Customer(3, "c", "c@email.com", 22)
+        );
+        Mockito.when(customerDao.selectCustomersAfterId(0, 3)).thenReturn(Flux.fromIterable(customers));
+
+        // When
+        Mono<CustomerPage> actual = underTest.getCustomersPage(0, 2);
+
+        // Then
+        StepVerifier.create(actual)
+                .expectNext(new CustomerPage(customers.subList(0, 2), 2))
+                .verifyComplete();
+    }
+
+    @Test
+    void willErrorWhenCustomersPageLimitInvalid() {
+        // When
+        Mono<CustomerPage> actual = underTest.getCustomersPage(0, 0);
+
+        // Then
+        StepVerifier.create(actual)
+                .expectErrorMatches(e -> e instanceof RequestValidationException
+                        && e.getMessage().equals("limit must be between 1 and 1000"))
+                .verify();
+        Mockito.verifyNoInteractions(customerDao);
+    }
+
+    @Test
+    void willErrorWhenGetCustomerEmpty() {
+        // Given
+        Mockito.when(customerDao.selectCustomerById(10)).thenReturn(Mono.empty());
+
+        // When
+        Mono<Customer> actual = underTest.getCustomer(10);
+
+        // Then
+        StepVerifier.create(actual)
+                .expectErrorMatches(e -> e instanceof ResourceNotFoundException
+                        && e.getMessage().equals("customer with id [10] not found"))
+                .verify();
+    }
+
+    @Test
+    void willErrorWhenEmailExistWhenAddCustomer() {
+        // Given
+        Mockito.when(customerDao.insertCustomer(Mockito.any())).thenReturn(Mono.just(false));
+
+        // When
+        Mono<Void> actual = underTest.addCustomer(new CustomerRegistrationRequest("a", "a@email.com", 20));
+
+        // Then
+        StepVerifier.create(actual)
+                .expectError(DuplicateResourceException.class)
+                .verify();
+    }
+
+    @Test
+    void addCustomers() {
+        // Given
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("a", "a@email.com", 20),
+                new CustomerRegistrationRequest("b", "b@email.com", 21),
+                new CustomerRegistrationRequest("", "c@email.com", 22),
+                new CustomerRegistrationRequest("d", "a@email.com", 23)
+        );
+        Mockito.when(customerDao.selectExistingEmails(List.of("a@email.com", "b@email.com", "a@email.com")))
+                .thenReturn(Mono.just(Set.of("b@email.com")));
+        Mockito.when(customerDao.insertCustomers(Mockito.anyList())).thenReturn(Mono.just(new int[]{1}));
+
+        // When
+        Mono<List<CustomerRegistrationResult>> actual = underTest.addCustomers(requests);
+
+        // Then
+        StepVerifier.create(actual)
+                .expectNext(List.of(
+                        new CustomerRegistrationResult(0, "a@email.com", CustomerRegistrationResult.Status.CREATED),
+                        new CustomerRegistrationResult(1, "b@email.com", CustomerRegistrationResult.Status.DUPLICATE),
+                        new CustomerRegistrationResult(2, "c@email.com", CustomerRegistrationResult.Status.INVALID),
+                        new CustomerRegistrationResult(3, "a@email.com", CustomerRegistrationResult.Status.DUPLICATE)
+                ))
+                .verifyComplete();
+    }
+
+    @Test
+    void willErrorWhenDeleteCustomerIdNotExist() {
+        // Given
+        Mockito.when(customerDao.deleteCustomerById(10)).thenReturn(Mono.just(false));
+
+        // When
+        Mono<Void> actual = underTest.deleteCustomer(10);
+
+        // Then
+        StepVerifier.create(actual)
+                .expectError(ResourceNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    void canUpdateOnlyChangedCustomerProperties() {
+        // Given
+        Customer customer = new Customer(10, "a", "a@email.com", 20);
+        Mockito.when(customerDao.selectCustomerById(10)).thenReturn(Mono.just(customer));
+        Mockito.when(customerDao.updateCustomer(Mockito.any())).thenReturn(Mono.just(true));
+
+        // When
+        Mono<Void> actual = underTest.updateCustomer(10, new CustomerUpdateRequest("b", "a@email.com", 20));
+
+        // Then
+        StepVerifier.create(actual).verifyComplete();
+
+        ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
+        Mockito.verify(customerDao).updateCustomer(customerArgumentCaptor.capture());
+        Customer captured = customerArgumentCaptor.getValue();
+
+        assertThat(captured.getId()).isEqualTo(10);
+        assertThat(captured.getName()).isEqualTo("b");
+        assertThat(captured.getEmail()).isNull();
+        assertThat(captured.getAge()).isNull();
+    }
+
+    @Test
+    void willErrorWhenUpdateCustomerEmailTaken() {
+        // Given
+        Customer customer = new Customer(10, "a", "a@email.com", 20);
+        Mockito.when(customerDao.selectCustomerById(10)).thenReturn(Mono.just(customer));
+        Mockito.when(customerDao.existPersonWithEmail("b@email.com")).thenReturn(Mono.just(true));
+
+        // When
+        Mono<Void> actual = underTest.updateCustomer(10, new CustomerUpdateRequest(null, "b@email.com", null));
+
+        // Then
+        StepVerifier.create(actual)
+                .expectErrorMatches(e -> e instanceof DuplicateResourceException
+                        && e.getMessage().equals("email already taken"))
+                .verify();
+        Mockito.verify(customerDao, Mockito.never()).updateCustomer(Mockito.any());
+    }
+}
@@ -1,19 +1,32 @@
 package com.springbootdemo.journey;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.springbootdemo.customer.Customer;
+import com.springbootdemo.customer.CustomerChanges;
+import com.springbootdemo.customer.CustomerEvent;
+import com.springbootdemo.customer.CustomerPage;
 import com.springbootdemo.customer.CustomerRegistrationRequest;
+import com.springbootdemo.customer.CustomerRegistrationResult;
 import com.springbootdemo.customer.CustomerUpdateRequest;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 public class CustomerIntegrationTest  {
@@ -200,4 +213,549 @@ public class CustomerIntegrationTest  {
 
         assertThat(updateCustomer).isEqualTo(expected);
     }
+
+    @Test
+    void canMakeConditionalRequests() {
+        // create registration request
+        Random random = new Random();
+        String email = "_email@email.com_" + random.nextInt();
+        String customerURI = "/api/v1/customers";
+
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("_name_", email, 20);
+
+        webTestClient.post()
+                .uri(customerURI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        int id = webTestClient.get()
+                .uri(customerURI)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(new ParameterizedTypeReference<Customer>() { })
+                .returnResult()
+                .getResponseBody()
+                .stream()
+                .filter(customer -> customer.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+
+        // the list has an ETag of its own
+        String listETag = webTestClient.get()
+                .uri(customerURI)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Customer.class)
+                .getResponseHeaders()
+                .getETag();
+
+        assertThat(listETag).isNotNull();
+
+        webTestClient.get()
+                .uri(customerURI)
+                .accept(MediaType.APPLICATION_JSON)
+                .ifNoneMatch(listETag)
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+
+        // get customer, then again with its ETag
+        String eTag = webTestClient.get()
+                .uri(customerURI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Customer.class)
+                .getResponseHeaders()
+                .getETag();
+
+        assertThat(eTag).isNotNull();
+
+        webTestClient.get()
+                .uri(customerURI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectBody()
+                .isEmpty();
+
+        // update with a list holding the ETag, then again with the now stale one
+        CustomerUpdateRequest updateRequest = new CustomerUpdateRequest("_newName_", null, null);
+
+        webTestClient.put()
+                .uri(customerURI + "/{id}", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, "\"999\", " + eTag)
+                .body(Mono.just(updateRequest), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        webTestClient.put()
+                .uri(customerURI + "/{id}", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .body(Mono.just(new CustomerUpdateRequest("_lostName_", null, null)), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        webTestClient.get()
+                .uri(customerURI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Customer.class)
+                .isEqualTo(new Customer(id, "_newName_", email, 20));
+    }
+
+    @Test
+    void canExportCustomers() {
+        // create registration request
+        Random random = new Random();
+        String name = "_name_";
+        String email = "_email@email.com_" + random.nextInt();
+        int age = random.nextInt(1, 100);
+        String customerURI = "/api/v1/customers";
+
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest(name, email, age);
+
+        // send a post request
+        webTestClient.post()
+                .uri(customerURI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(request), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // export all customers
+        List<Customer> exported = webTestClient.get()
+                .uri(customerURI + "/export")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Customer.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        // make sure customer is present
+        Customer expectCustomer = new Customer(name, email, age);
+
+        assertThat(exported)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("id")
+                .contains(expectCustomer);
+    }
+
+    @Test
+    void canFilterAndSortCustomers() {
+        // create customers on a domain of their own
+        Random random = new Random();
+        String domain = "filter" + random.nextInt(Integer.MAX_VALUE) + ".com";
+        String customerURI = "/api/v1/customers";
+
+        for (int age : List.of(30, 50, 17)) {
+            webTestClient.post()
+                    .uri(customerURI)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Mono.just(new CustomerRegistrationRequest("_name_" + age, age + "@" + domain, age)),
+                            CustomerRegistrationRequest.class)
+                    .exchange()
+                    .expectStatus()
+                    .isOk();
+        }
+
+        // adults on that domain, oldest first
+        List<Customer> filtered = webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path(customerURI)
+                        .queryParam("emailDomain", domain)
+                        .queryParam("minAge", 18)
+                        .queryParam("namePrefix", "_name_")
+                        .queryParam("sort", "-age")
+                        .build())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(new ParameterizedTypeReference<Customer>() { })
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(filtered)
+                .extracting(Customer::getAge)
+                .containsExactly(50, 30);
+
+        // unknown sort fields are rejected
+        webTestClient.get()
+                .uri(customerURI + "?sort=password")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void canSearchCustomers() {
+        // create a customer with a name nobody else has
+        Random random = new Random();
+        String name = "Searchable" + random.nextInt(Integer.MAX_VALUE);
+        String email = "_email@email.com_" + random.nextInt();
+        String customerURI = "/api/v1/customers";
+
+        webTestClient.post()
+                .uri(customerURI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest(name, email, 30)), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // search by part of the name, in another case
+        List<Customer> found = webTestClient.get()
+                .uri(customerURI + "/search?q={q}", name.substring(4).toUpperCase())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(new ParameterizedTypeReference<Customer>() { })
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(found)
+                .extracting(Customer::getEmail)
+                .containsExactly(email);
+
+        // too short to search
+        webTestClient.get()
+                .uri(customerURI + "/search?q=ab")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void canExchangeSmileAndCbor() throws IOException {
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        MediaType smile = MediaType.parseMediaType("application/x-jackson-smile");
+
+        // register with a CBOR body
+        Random random = new Random();
+        String email = "_email@email.com_" + random.nextInt();
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("_name_", email, 30);
+        String customerURI = "/api/v1/customers";
+
+        webTestClient.post()
+                .uri(customerURI)
+                .contentType(MediaType.APPLICATION_CBOR)
+                .bodyValue(cborMapper.writeValueAsBytes(request))
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // list as Smile
+        byte[] list = webTestClient.get()
+                .uri(customerURI)
+                .accept(smile)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentTypeCompatibleWith(smile)
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+
+        Customer expectCustomer = smileMapper.readValue(list, new TypeReference<List<Customer>>() { })
+                .stream()
+                .filter(customer -> customer.getEmail().equals(email))
+                .findFirst()
+                .orElseThrow();
+
+        // the customer as CBOR
+        byte[] customer = webTestClient.get()
+                .uri(customerURI + "/{id}", expectCustomer.getId())
+                .accept(MediaType.APPLICATION_CBOR)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.APPLICATION_CBOR)
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(cborMapper.readValue(customer, Customer.class)).isEqualTo(expectCustomer);
+
+        // JSON stays the default
+        String jsonETag = webTestClient.get()
+                .uri(customerURI + "/{id}", expectCustomer.getId())
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectHeader()
+                .valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .returnResult(Customer.class)
+                .getResponseHeaders()
+                .getETag();
+
+        // the JSON ETag doesn't stand for the CBOR body, the CBOR one does
+        String cborETag = webTestClient.get()
+                .uri(customerURI + "/{id}", expectCustomer.getId())
+                .accept(MediaType.APPLICATION_CBOR)
+                .ifNoneMatch(jsonETag)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .expectBody(byte[].class)
+                .returnResult()
+                .getResponseHeaders()
+                .getETag();
+
+        assertThat(cborETag).isNotEqualTo(jsonETag);
+
+        webTestClient.get()
+                .uri(customerURI + "/{id}", expectCustomer.getId())
+                .accept(MediaType.APPLICATION_CBOR)
+                .ifNoneMatch(cborETag)
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+
+        // a page is negotiated as well
+        webTestClient.get()
+                .uri(customerURI + "?limit=1")
+                .accept(smile)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    }
+
+    @Test
+    void canFollowCustomerChanges() {
+        String customerURI = "/api/v1/customers";
+
+        // catch up with the changes so far
+        long since = 0;
+        CustomerChanges changes;
+        do {
+            changes = getChanges(since, 0);
+            since = changes.next();
+        } while (!changes.events().isEmpty());
+
+        // nothing new: the long poll runs out and hands back the same position
+        assertThat(getChanges(since, 1)).isEqualTo(new CustomerChanges(List.of(), since));
+
+        // register, update and delete a customer
+        Random random = new Random();
+        String email = "_email@email.com_" + random.nextInt();
+        webTestClient.post()
+                .uri(customerURI)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerRegistrationRequest("_name_", email, 20)), CustomerRegistrationRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+        int id = webTestClient.get()
+                .uri(customerURI + "?emailDomain={domain}", email.substring(email.indexOf('@') + 1))
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(new ParameterizedTypeReference<Customer>() { })
+                .returnResult()
+                .getResponseBody()
+                .stream()
+                .filter(customer -> customer.getEmail().equals(email))
+                .map(Customer::getId)
+                .findFirst()
+                .orElseThrow();
+        webTestClient.put()
+                .uri(customerURI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(new CustomerUpdateRequest(null, null, 21)), CustomerUpdateRequest.class)
+                .exchange()
+                .expectStatus()
+                .isOk();
+        webTestClient.delete()
+                .uri(customerURI + "/{id}", id)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // the feed has the three changes in order
+        changes = getChanges(since, 5);
+        assertThat(changes.next()).isGreaterThan(since);
+        assertThat(changes.events())
+                .filteredOn(event -> event.customerId() == id)
+                .extracting(CustomerEvent::type, CustomerEvent::email, CustomerEvent::age)
+                .containsExactly(
+                        tuple(CustomerEvent.Type.CREATED, email, 20),
+                        tuple(CustomerEvent.Type.UPDATED, email, 21),
+                        tuple(CustomerEvent.Type.DELETED, null, null));
+    }
+
+    private CustomerChanges getChanges(long since, int wait) {
+        return webTestClient.get()
+                .uri("/api/v1/customers/changes?since={since}&limit=1000&wait={wait}", since, wait)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerChanges.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Test
+    void canGetCustomersByIds() {
+        Random random = new Random();
+        String customerURI = "/api/v1/customers";
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("_name_", "_email@email.com_" + random.nextInt(), 20),
+                new CustomerRegistrationRequest("_name_", "_email@email.com_" + random.nextInt(), 30));
+        for (CustomerRegistrationRequest request : requests) {
+            webTestClient.post()
+                    .uri(customerURI)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Mono.just(request), CustomerRegistrationRequest.class)
+                    .exchange()
+                    .expectStatus()
+                    .isOk();
+        }
+        List<Integer> ids = webTestClient.get()
+                .uri(customerURI)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(new ParameterizedTypeReference<Customer>() { })
+                .returnResult()
+                .getResponseBody()
+                .stream()
+                .filter(customer -> customer.getEmail().equals(requests.get(0).email())
+                        || customer.getEmail().equals(requests.get(1).email()))
+                .sorted(Comparator.comparing(Customer::getAge))
+                .map(Customer::getId)
+                .toList();
+
+        // in the order asked for, the id nobody has left out
+        List<Customer> found = webTestClient.get()
+                .uri(customerURI + "?ids={second},{first},-1", ids.get(1), ids.get(0))
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(new ParameterizedTypeReference<Customer>() { })
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(found)
+                .extracting(Customer::getEmail)
+                .containsExactly(requests.get(1).email(), requests.get(0).email());
+
+        // paging, filtering and sorting don't apply to ids
+        for (String others : List.of("limit=10", "after=1", "sort=age", "minAge=18")) {
+            webTestClient.get()
+                    .uri(customerURI + "?ids={first}&" + others, ids.get(0))
+                    .accept(MediaType.APPLICATION_JSON)
+                    .exchange()
+                    .expectStatus()
+                    .isBadRequest();
+        }
+
+        // a cursor without a limit gets a page, not the whole list
+        CustomerPage page = webTestClient.get()
+                .uri(customerURI + "?after={first}", ids.get(0))
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(CustomerPage.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(page).isNotNull();
+        assertThat(page.customers())
+                .hasSizeLessThanOrEqualTo(100)
+                .extracting(Customer::getId)
+                .allMatch(id -> id > ids.get(0))
+                .contains(ids.get(1));
+    }
+
+    @Test
+    void canRegisterCustomersInBatch() {
+        // create registration requests, the second one repeats the first email
+        Random random = new Random();
+        String email = "_email@email.com_" + random.nextInt();
+        String customerURI = "/api/v1/customers";
+
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("_name_", email, 20),
+                new CustomerRegistrationRequest("_name_", email, 21)
+        );
+
+        // send a batch post request
+        List<CustomerRegistrationResult> results = webTestClient.post()
+                .uri(customerURI + "/batch")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Mono.just(requests), new ParameterizedTypeReference<List<CustomerRegistrationRequest>>() { })
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(CustomerRegistrationResult.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(results).containsExactly(
+                new CustomerRegistrationResult(0, email, CustomerRegistrationResult.Status.CREATED),
+                new CustomerRegistrationResult(1, email, CustomerRegistrationResult.Status.DUPLICATE)
+        );
+
+        // make sure customer is present
+        List<Customer> allCustomers = webTestClient.get()
+                .uri(customerURI)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(new ParameterizedTypeReference<Customer>() { })
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(allCustomers)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("id")
+                .contains(new Customer("_name_", email, 20));
+    }
 }
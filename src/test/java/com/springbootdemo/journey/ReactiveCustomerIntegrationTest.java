@@ -0,0 +1,8 @@
+package com.springbootdemo.journey;
+
+import org.springframework.test.context.ActiveProfiles;
+
+// the same journeys against the WebFlux controller and the R2DBC DAO
+@ActiveProfiles("reactive")
+public class ReactiveCustomerIntegrationTest extends CustomerIntegrationTest {
+}